@@ -6,10 +6,14 @@ import io.github.darkkronicle.advancedchat.config.ChatLogData;
 import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
 import io.github.darkkronicle.advancedchat.gui.AdvancedSleepingChatScreen;
 import io.github.darkkronicle.advancedchat.gui.ChatLogScreen;
+import io.github.darkkronicle.advancedchat.storage.ChatArchive;
+import io.github.darkkronicle.advancedchat.storage.ChatSnapshot;
+import io.github.darkkronicle.advancedchat.chat.FilterReprocessor;
 import io.github.darkkronicle.advancedchat.util.SyncTaskQueue;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.Environment;
 import net.fabricmc.api.EnvType;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.MinecraftClient;
@@ -59,6 +63,13 @@ public class AdvancedChat implements ClientModInitializer {
             if (client.currentScreen instanceof AdvancedSleepingChatScreen && !client.player.isSleeping()) {
                 client.openScreen(null);
             }
+            ChatSnapshot.getInstance().tick(s);
+            FilterReprocessor.getInstance().tick();
+        });
+        ClientLifecycleEvents.CLIENT_STOPPING.register(s -> {
+            ChatSnapshot.getInstance().save();
+            ChatSnapshot.getInstance().close();
+            ChatArchive.getInstance().close();
         });
         File english = new File("./config/advancedchat/english.zip");
         if (!english.exists()) {
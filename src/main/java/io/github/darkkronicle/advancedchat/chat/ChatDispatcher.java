@@ -5,6 +5,8 @@ import io.github.darkkronicle.advancedchat.config.Filter;
 import io.github.darkkronicle.advancedchat.filters.ColorFilter;
 import io.github.darkkronicle.advancedchat.filters.ParentFilter;
 import io.github.darkkronicle.advancedchat.filters.ReplaceFilter;
+import io.github.darkkronicle.advancedchat.filters.conditions.ConditionParser;
+import io.github.darkkronicle.advancedchat.filters.conditions.FilterCondition;
 import io.github.darkkronicle.advancedchat.interfaces.IFilter;
 import io.github.darkkronicle.advancedchat.mixin.MixinChatHudInvoker;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
@@ -15,9 +17,12 @@ import io.github.darkkronicle.advancedchat.interfaces.IMessageProcessor;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
+import org.apache.logging.log4j.LogManager;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -31,6 +36,11 @@ public class ChatDispatcher implements IMessageProcessor {
 
     private ArrayList<ParentFilter> filters = new ArrayList<>();
 
+    /**
+     * Loaded filters by the config they came from
+     */
+    private Map<Filter, ParentFilter> loaded = new IdentityHashMap<>();
+
     private final static ChatDispatcher INSTANCE = new ChatDispatcher();
 
     /**
@@ -69,12 +79,30 @@ public class ChatDispatcher implements IMessageProcessor {
 
     @Override
     public boolean process(FluidText text, FluidText original) {
-        FluidText unfiltered = text;
+        // Filters change the text in place
+        FluidText unfiltered = text.copy();
+        MessageFields fields = MessageTemplates.getInstance().parse(MinecraftClient.getInstance().getNetworkHandler(), unfiltered.getString());
+
+        text = filter(text, unfiltered, fields);
+
+        if (text.getString().length() != 0) {
+            finalProcessor.process(text, unfiltered);
+        }
+        return true;
+    }
 
+    /**
+     * Runs text through the filters that are loaded.
+     *
+     * @param text Text to filter. May be changed.
+     * @param unfiltered Text before filtering
+     * @param fields Fields of the unfiltered text
+     * @return Filtered text with the background color set. Empty if the message shouldn't be shown.
+     */
+    public FluidText filter(FluidText text, FluidText unfiltered, MessageFields fields) {
         ColorUtil.SimpleColor backgroundColor = null;
-        // Filter text
         for (ParentFilter filter : filters) {
-            ParentFilter.FilterResult result = filter.filter(text, unfiltered);
+            ParentFilter.FilterResult result = filter.filter(text, unfiltered, fields);
             if (result.getColor().isPresent()) {
                 backgroundColor = result.getColor().get();
             }
@@ -83,11 +111,7 @@ public class ChatDispatcher implements IMessageProcessor {
             }
         }
         text.setBackgroundColor(backgroundColor);
-
-        if (text.getString().length() != 0) {
-            finalProcessor.process(text, unfiltered);
-        }
-        return true;
+        return text;
     }
 
     /**
@@ -96,20 +120,39 @@ public class ChatDispatcher implements IMessageProcessor {
     public void loadFilters() {
         filters = new ArrayList<>();
         colorFilters = new ArrayList<>();
+        loaded = new IdentityHashMap<>();
         for (Filter filter : ConfigStorage.FILTERS) {
             // If it replaces anything.
             ParentFilter filt = createFilter(filter);
             if (filt != null) {
                 filters.add(filt);
+                loaded.put(filter, filt);
             }
         }
     }
 
+    /**
+     * Gets the compiled condition of a loaded filter, which shows the order it's being checked in
+     */
+    public Optional<FilterCondition> getCondition(Filter filter) {
+        ParentFilter filt = loaded.get(filter);
+        return filt == null ? Optional.empty() : Optional.ofNullable(filt.getCondition());
+    }
+
     public static ParentFilter createFilter(Filter filter) {
         if (!filter.getActive().config.getBooleanValue()) {
             return null;
         }
-        ParentFilter filt = new ParentFilter(filter.getFind(), filter.getFindString().config.getStringValue());
+        ParentFilter filt = new ParentFilter(filter.getFind(), filter.getFindString().config.getStringValue(), filter.getMessageField());
+        if (filter.getCondition() != null) {
+            try {
+                filt.setCondition(ConditionParser.parse(filter.getCondition()));
+            } catch (IllegalArgumentException e) {
+                // Running it without the condition could match far more than it should
+                LogManager.getLogger().warn("[AdvancedChat] Filter {} has an invalid condition and won't be used: {}", filter.getName().config.getStringValue(), e.getMessage());
+                return null;
+            }
+        }
         if (filter.getReplace() != null) {
             if (filter.getReplace().useChildren()) {
                 ReplaceFilter f = new ReplaceFilter(filter.getReplaceTo().config.getStringValue().replaceAll("&", "§"), filter.getReplace(), null);
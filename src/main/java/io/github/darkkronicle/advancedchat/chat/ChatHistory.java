@@ -1,5 +1,6 @@
 package io.github.darkkronicle.advancedchat.chat;
 
+import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
 import lombok.Getter;
@@ -7,6 +8,7 @@ import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Environment(EnvType.CLIENT)
@@ -14,9 +16,17 @@ public class ChatHistory {
 
     private final static ChatHistory INSTANCE = new ChatHistory();
 
+    /**
+     * Newest first
+     */
     @Getter
     private final List<ChatMessage> messages = new ArrayList<>();
 
+    /**
+     * Messages of each tab by tab id. These stay the same objects so windows can keep them.
+     */
+    private final TabMessageList[] tabs = new TabMessageList[Long.SIZE];
+
     public static ChatHistory getInstance() {
         return INSTANCE;
     }
@@ -27,6 +37,63 @@ public class ChatHistory {
 
     public void clear() {
         messages.clear();
+        for (TabMessageList list : tabs) {
+            if (list != null) {
+                list.reset();
+            }
+        }
+    }
+
+    /**
+     * Gets the messages in a tab, newest first. The list keeps updating as messages come and go.
+     */
+    public List<ChatMessage> getMessages(AbstractChatTab tab) {
+        int id = tab.getId();
+        if (id < 0 || id >= tabs.length) {
+            return Collections.emptyList();
+        }
+        if (tabs[id] == null) {
+            tabs[id] = new TabMessageList();
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if (messages.get(i).isInTab(tab)) {
+                    tabs[id].addNewest(messages.get(i));
+                }
+            }
+        }
+        return tabs[id];
+    }
+
+    /**
+     * Builds the tab lists again after the tabs of messages changed.
+     */
+    public void reindex() {
+        for (TabMessageList list : tabs) {
+            if (list != null) {
+                list.reset();
+            }
+        }
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            index(messages.get(i));
+        }
+    }
+
+    private void index(ChatMessage message) {
+        for (long mask = message.getTabs(); mask != 0; mask &= mask - 1) {
+            TabMessageList list = tabs[Long.numberOfTrailingZeros(mask)];
+            if (list != null) {
+                list.addNewest(message);
+            }
+        }
+    }
+
+    private void removeOldest() {
+        ChatMessage removed = this.messages.remove(this.messages.size() - 1);
+        for (long mask = removed.getTabs(); mask != 0; mask &= mask - 1) {
+            TabMessageList list = tabs[Long.numberOfTrailingZeros(mask)];
+            if (list != null) {
+                list.removeOldest(removed);
+            }
+        }
     }
 
     public void add(ChatMessage message) {
@@ -34,18 +101,35 @@ public class ChatHistory {
             ChatMessage chatLine = messages.get(i);
             if (message.isSimilar(chatLine)) {
                 chatLine.setStacks(chatLine.getStacks() + 1);
+                AdvancedChatHud.getInstance().onMessageUpdate(chatLine);
                 return;
             }
         }
         messages.add(0, message);
+        index(message);
         while (this.messages.size() > ConfigStorage.ChatLog.STORED_LINES.config.getIntegerValue()) {
-            this.messages.remove(this.messages.size() - 1);
+            removeOldest();
         }
         AdvancedChatHud.getInstance().onNewMessage(message);
     }
 
+    /**
+     * Puts back messages from a snapshot without notifying anything.
+     *
+     * @param restored Messages, newest first
+     */
+    public void restore(List<ChatMessage> restored) {
+        messages.addAll(restored);
+        while (this.messages.size() > ConfigStorage.ChatLog.STORED_LINES.config.getIntegerValue()) {
+            this.messages.remove(this.messages.size() - 1);
+        }
+        reindex();
+    }
+
     public void removeMessage(int messageId) {
-        this.messages.removeIf(line -> line.getId() == messageId);
+        if (this.messages.removeIf(line -> line.getId() == messageId)) {
+            reindex();
+        }
     }
 
 }
@@ -1,6 +1,5 @@
 package io.github.darkkronicle.advancedchat.chat;
 
-import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import net.fabricmc.api.EnvType;
@@ -10,11 +9,11 @@ import net.fabricmc.api.Environment;
 @Environment(EnvType.CLIENT)
 @Data
 public class ChatLogMessage extends ChatMessage {
-    private AbstractChatTab[] tab;
 
-    public ChatLogMessage(ChatMessage message, AbstractChatTab... tabs) {
+    public ChatLogMessage(ChatMessage message) {
         super(message.creationTick, message.displayText, message.originalText, message.id, message.time, message.background, 600, message.owner, message.tabs);
-        this.tab = tabs;
+        // Messages get logged in order, so the log is sorted by this
+        this.timestamp = message.timestamp;
     }
 
 }
@@ -1,13 +1,19 @@
 package io.github.darkkronicle.advancedchat.chat;
 
 import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
+import io.github.darkkronicle.advancedchat.util.RawText;
 import io.github.darkkronicle.advancedchat.util.StyleFormatter;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.OrderedText;
 import net.minecraft.text.Text;
 
 import java.time.LocalTime;
@@ -27,8 +33,89 @@ public class ChatMessage {
     protected int stacks;
     protected UUID uuid;
     protected MessageOwner owner;
+
+    /**
+     * Bits of the ids of the tabs the message is in, see {@link AbstractChatTab#getMask()}
+     */
+    protected long tabs;
+
+    /**
+     * Text before any filters ran, used to run changed filters over it again. Null if it isn't known.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    protected Text unfilteredText;
+
+    /**
+     * Author, channel and body found by the message templates. Found from the text when first asked for
+     * if the message didn't come with them.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    protected MessageFields fields;
+
+    /**
+     * Epoch milliseconds when the message was received
+     */
+    protected long timestamp;
+
+    /**
+     * Wrapped lines, only built once something asks for them
+     */
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     protected List<AdvancedChatLine> lines;
-    protected List<AbstractChatTab> tabs;
+
+    @Setter(AccessLevel.NONE)
+    protected int width;
+
+    /**
+     * How many other widths are kept wrapped, one for each window of a different size
+     */
+    private static final int OTHER_WIDTHS = 8;
+
+    /**
+     * Lines wrapped to other widths, so windows of different sizes can show the same message
+     * without wrapping it every frame. Only created once a second width is asked for.
+     */
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    protected List<List<AdvancedChatLine>> otherLines;
+
+    /**
+     * Width of each of {@link #otherLines}
+     */
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    protected int[] otherWidths;
+
+    /**
+     * Slot of {@link #otherLines} replaced next once all are used
+     */
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    protected int nextOther;
+
+    /**
+     * The " (n)" shown after the last line when a message is stacked. Built once per stack change
+     * so it doesn't have to be recreated every frame.
+     */
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    protected OrderedText stackSuffix;
+
+    public void setStacks(int stacks) {
+        this.stacks = stacks;
+        if (stacks > 0) {
+            this.stackSuffix = RawText.withColor(" (" + stacks + ")", ColorUtil.GRAY).asOrderedText();
+        } else {
+            this.stackSuffix = null;
+        }
+    }
 
     public void setDisplayText(Text text, int width) {
         this.displayText = text;
@@ -36,7 +123,9 @@ public class ChatMessage {
     }
 
     public ChatMessage shallowClone(int width) {
-        return new ChatMessage(creationTick, displayText, originalText, id, time, background, width, owner, tabs);
+        ChatMessage clone = new ChatMessage(creationTick, displayText, originalText, id, time, background, width, owner, tabs);
+        clone.timestamp = timestamp;
+        return clone;
     }
 
     @Data
@@ -44,12 +133,30 @@ public class ChatMessage {
         private Text text;
         private final ChatMessage parent;
         private int width;
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        private OrderedText orderedText;
 
         private AdvancedChatLine(ChatMessage parent, Text text) {
             this.parent = parent;
             this.text = text;
             this.width = MinecraftClient.getInstance().textRenderer.getWidth(text);
         }
+
+        public void setText(Text text) {
+            this.text = text;
+            this.orderedText = null;
+        }
+
+        /**
+         * The text in the form the renderer consumes. Converting is not free, so it's only done once.
+         */
+        public OrderedText getOrderedText() {
+            if (orderedText == null) {
+                orderedText = text.asOrderedText();
+            }
+            return orderedText;
+        }
         @Override
         public String toString() {
             return "AdvancedChatLine{" +
@@ -60,14 +167,24 @@ public class ChatMessage {
 
     }
 
-    public void addTab(AbstractChatTab tab) {
-        if (!this.tabs.contains(tab)) {
-            this.tabs.add(tab);
+    public MessageFields getFields() {
+        if (fields == null) {
+            Text text = unfilteredText == null ? originalText : unfilteredText;
+            fields = MessageTemplates.getInstance().parse(MinecraftClient.getInstance().getNetworkHandler(), text.getString());
         }
+        return fields;
+    }
+
+    public void addTab(AbstractChatTab tab) {
+        this.tabs |= tab.getMask();
+    }
+
+    public boolean isInTab(AbstractChatTab tab) {
+        return (tabs & tab.getMask()) != 0;
     }
 
     @Builder
-    protected ChatMessage(int creationTick, Text displayText, Text originalText, int id, LocalTime time, ColorUtil.SimpleColor background, int width, MessageOwner owner, List<AbstractChatTab> tabs) {
+    protected ChatMessage(int creationTick, Text displayText, Text originalText, int id, LocalTime time, ColorUtil.SimpleColor background, int width, MessageOwner owner, long tabs) {
         this.creationTick = creationTick;
         this.displayText = displayText;
         this.id = id;
@@ -77,19 +194,70 @@ public class ChatMessage {
         this.uuid = UUID.randomUUID();
         this.owner = owner;
         this.originalText = originalText == null ? displayText : originalText;
-        this.tabs = tabs == null ? new ArrayList<>() : tabs;
+        this.tabs = tabs;
+        this.timestamp = System.currentTimeMillis();
         formatChildren(width);
     }
 
+    /**
+     * Sets the width the text gets wrapped to. The wrapping itself waits until the lines are needed,
+     * so messages that are never drawn never get wrapped.
+     */
     public void formatChildren(int width) {
-        this.lines = new ArrayList<>();
+        this.width = width;
+        this.lines = null;
+        this.otherLines = null;
+        this.otherWidths = null;
+        this.nextOther = 0;
+    }
+
+    public List<AdvancedChatLine> getLines() {
+        if (lines == null) {
+            lines = wrap(width);
+        }
+        return lines;
+    }
+
+    /**
+     * Gets the lines wrapped to a width. The lines of up to {@link #OTHER_WIDTHS} other widths are kept
+     * along with the main width, the oldest being replaced past that.
+     */
+    public List<AdvancedChatLine> getLines(int width) {
+        if (width == this.width || lines == null) {
+            this.width = width;
+            return getLines();
+        }
+        if (otherLines == null) {
+            otherLines = new ArrayList<>(OTHER_WIDTHS);
+            otherWidths = new int[OTHER_WIDTHS];
+        }
+        for (int i = 0; i < otherLines.size(); i++) {
+            if (otherWidths[i] == width) {
+                return otherLines.get(i);
+            }
+        }
+        List<AdvancedChatLine> wrapped = wrap(width);
+        if (otherLines.size() < OTHER_WIDTHS) {
+            otherWidths[otherLines.size()] = width;
+            otherLines.add(wrapped);
+        } else {
+            otherWidths[nextOther] = width;
+            otherLines.set(nextOther, wrapped);
+            nextOther = (nextOther + 1) % OTHER_WIDTHS;
+        }
+        return wrapped;
+    }
+
+    private List<AdvancedChatLine> wrap(int width) {
+        List<AdvancedChatLine> wrapped = new ArrayList<>();
         if (width == 0) {
-            this.lines.add(new AdvancedChatLine(this, displayText));
+            wrapped.add(new AdvancedChatLine(this, displayText));
         } else {
             for (Text t : StyleFormatter.wrapText(MinecraftClient.getInstance().textRenderer, width, displayText)) {
-                this.lines.add(new AdvancedChatLine(this, t));
+                wrapped.add(new AdvancedChatLine(this, t));
             }
         }
+        return wrapped;
     }
 
     public boolean isSimilar(ChatMessage message) {
@@ -97,7 +265,11 @@ public class ChatMessage {
     }
 
     public int getLineCount() {
-        return this.lines.size();
+        return getLines().size();
+    }
+
+    public int getLineCount(int width) {
+        return getLines(width).size();
     }
 
 }
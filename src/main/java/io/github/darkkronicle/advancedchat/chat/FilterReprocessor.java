@@ -0,0 +1,130 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.filters.ForwardFilter;
+import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
+import io.github.darkkronicle.advancedchat.util.FluidText;
+import lombok.Getter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.Text;
+import org.apache.logging.log4j.LogManager;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the current filters over messages already in chat.
+ *
+ * Every message keeps the text it had before filtering, which gets filtered again a few messages at a
+ * time each tick until the time budget for the tick is used up. Processors like sounds or the
+ * narrator don't run again. Nothing changes on screen until every message is done, then all of them
+ * are swapped at once and wrapped again when they're drawn. Messages the filters would now hide
+ * are left alone.
+ */
+@Environment(EnvType.CLIENT)
+public class FilterReprocessor {
+
+    private final static FilterReprocessor INSTANCE = new FilterReprocessor();
+
+    /**
+     * Time each tick can spend filtering
+     */
+    private static final long TICK_BUDGET = 2000000;
+
+    private List<ChatMessage> messages = null;
+    private Text[] originals;
+    private FluidText[] displays;
+    private int next = 0;
+
+    @Getter
+    private boolean running = false;
+
+    public static FilterReprocessor getInstance() {
+        return INSTANCE;
+    }
+
+    private FilterReprocessor() {
+
+    }
+
+    /**
+     * Starts filtering the history again. Starts over if it's already running.
+     */
+    public void start() {
+        messages = new ArrayList<>();
+        for (ChatMessage message : ChatHistory.getInstance().getMessages()) {
+            if (message.getUnfilteredText() != null) {
+                messages.add(message);
+            }
+        }
+        originals = new Text[messages.size()];
+        displays = new FluidText[messages.size()];
+        next = 0;
+        running = true;
+    }
+
+    public void tick() {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean showTime = ConfigStorage.ChatScreen.SHOW_TIME.config.getBooleanValue();
+        DateTimeFormatter format = showTime ? DateTimeFormatter.ofPattern(ConfigStorage.General.TIME_FORMAT.config.getStringValue()) : null;
+        ForwardFilter.setSuppressed(true);
+        try {
+            while (next < messages.size() && System.nanoTime() - start < TICK_BUDGET) {
+                filter(next, format);
+                next++;
+            }
+        } catch (RuntimeException e) {
+            LogManager.getLogger().error("[AdvancedChat] Couldn't filter chat history again", e);
+            stop();
+            return;
+        } finally {
+            ForwardFilter.setSuppressed(false);
+        }
+        if (next >= messages.size()) {
+            apply();
+        }
+    }
+
+    private void filter(int index, DateTimeFormatter format) {
+        ChatMessage message = messages.get(index);
+        FluidText unfiltered = new FluidText(message.getUnfilteredText());
+        FluidText text = ChatDispatcher.getInstance().filter(unfiltered.copy(), unfiltered, message.getFields());
+        if (text.getString().isEmpty()) {
+            return;
+        }
+        originals[index] = text.copy();
+        if (format != null && message.getTime() != null) {
+            text.addTime(format, message.getTime());
+        }
+        displays[index] = text;
+    }
+
+    private void apply() {
+        for (int i = 0; i < messages.size(); i++) {
+            if (displays[i] == null) {
+                continue;
+            }
+            ChatMessage message = messages.get(i);
+            message.setOriginalText(originals[i]);
+            message.setBackground(displays[i].getBackgroundColor());
+            message.setDisplayText(displays[i], message.getWidth());
+        }
+        LogManager.getLogger().info("[AdvancedChat] Filtered {} messages again", messages.size());
+        stop();
+        AdvancedChatHud.getInstance().refresh();
+    }
+
+    private void stop() {
+        messages = null;
+        originals = null;
+        displays = null;
+        next = 0;
+        running = false;
+    }
+
+}
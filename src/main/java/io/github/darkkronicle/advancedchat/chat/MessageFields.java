@@ -0,0 +1,32 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import lombok.Value;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+/**
+ * Parts of a message found by a {@link MessageTemplate}. Parts the template doesn't have are null.
+ *
+ * Each part also keeps where it starts in the message without color codes, -1 if it isn't there, so
+ * it can be found again even when the same text shows up earlier in the message.
+ */
+@Value
+@Environment(EnvType.CLIENT)
+public class MessageFields {
+
+    /**
+     * Fields of a message no template matched
+     */
+    public static final MessageFields NONE = new MessageFields(null, null, null, null, -1, -1, -1, -1);
+
+    String author;
+    String rank;
+    String channel;
+    String body;
+
+    int authorStart;
+    int rankStart;
+    int channelStart;
+    int bodyStart;
+
+}
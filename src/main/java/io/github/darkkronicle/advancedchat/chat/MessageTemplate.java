@@ -0,0 +1,166 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import lombok.Getter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Format a server puts chat messages in, such as {@code <{author}> {body}} or
+ * {@code [{rank}] {author}: {body}}.
+ *
+ * The placeholders are {@code {author}}, {@code {rank}}, {@code {channel}}, {@code {body}} and
+ * {@code {_}} for anything that should be skipped. Spaces match any amount of whitespace and
+ * everything else has to be there as written. The template is matched from the start of the message,
+ * and if it has no body placeholder the body is whatever comes after it.
+ */
+@Environment(EnvType.CLIENT)
+public class MessageTemplate {
+
+    private static final String AUTHOR = "author";
+    private static final String RANK = "rank";
+    private static final String CHANNEL = "channel";
+    private static final String BODY = "body";
+
+    @Getter
+    private final String template;
+
+    private final Pattern pattern;
+    private final boolean hasAuthor;
+    private final boolean hasRank;
+    private final boolean hasChannel;
+    private final boolean hasBody;
+
+    private MessageTemplate(String template, Pattern pattern) {
+        this.template = template;
+        this.pattern = pattern;
+        this.hasAuthor = template.contains("{" + AUTHOR + "}");
+        this.hasRank = template.contains("{" + RANK + "}");
+        this.hasChannel = template.contains("{" + CHANNEL + "}");
+        this.hasBody = template.contains("{" + BODY + "}");
+    }
+
+    /**
+     * Compiles a template
+     *
+     * @throws IllegalArgumentException If a placeholder is unknown, unclosed or used twice
+     */
+    public static MessageTemplate compile(String template) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int used = 0;
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c == '{') {
+                int end = template.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder in " + template);
+                }
+                appendLiteral(regex, literal);
+                String name = template.substring(i + 1, end);
+                int bit = getBit(name);
+                if ((used & bit) != 0) {
+                    throw new IllegalArgumentException("Placeholder {" + name + "} is used twice in " + template);
+                }
+                used |= bit;
+                regex.append(getRegex(name));
+                i = end + 1;
+            } else if (Character.isWhitespace(c)) {
+                appendLiteral(regex, literal);
+                while (i < template.length() && Character.isWhitespace(template.charAt(i))) {
+                    i++;
+                }
+                regex.append("\\s+");
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        appendLiteral(regex, literal);
+        return new MessageTemplate(template, Pattern.compile(regex.toString(), Pattern.DOTALL));
+    }
+
+    private static void appendLiteral(StringBuilder regex, StringBuilder literal) {
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    private static int getBit(String name) {
+        switch (name) {
+            case AUTHOR:
+                return 1;
+            case RANK:
+                return 2;
+            case CHANNEL:
+                return 4;
+            case BODY:
+                return 8;
+            case "_":
+                // Can be skipped more than once
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown placeholder {" + name + "}");
+        }
+    }
+
+    private static String getRegex(String name) {
+        switch (name) {
+            case AUTHOR:
+                return "(?<" + AUTHOR + ">[A-Za-z0-9_]{1,16})";
+            case RANK:
+                return "(?<" + RANK + ">[^\\[\\]<>:»]+?)";
+            case CHANNEL:
+                return "(?<" + CHANNEL + ">[^\\[\\]<>:»]+?)";
+            case BODY:
+                return "(?<" + BODY + ">.*)";
+            default:
+                return ".*?";
+        }
+    }
+
+    /**
+     * Matches the template against the start of a message
+     *
+     * @param text Message without color codes
+     * @return Fields of the message or null if it doesn't fit the template
+     */
+    public MessageFields match(String text) {
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.lookingAt()) {
+            return null;
+        }
+        String body;
+        int bodyStart;
+        if (hasBody) {
+            body = matcher.group(BODY);
+            bodyStart = matcher.start(BODY);
+        } else {
+            // Same as trimming what comes after the match
+            bodyStart = matcher.end();
+            int bodyEnd = text.length();
+            while (bodyStart < bodyEnd && text.charAt(bodyStart) <= ' ') {
+                bodyStart++;
+            }
+            while (bodyEnd > bodyStart && text.charAt(bodyEnd - 1) <= ' ') {
+                bodyEnd--;
+            }
+            body = text.substring(bodyStart, bodyEnd);
+        }
+        return new MessageFields(
+                hasAuthor ? matcher.group(AUTHOR) : null,
+                hasRank ? matcher.group(RANK) : null,
+                hasChannel ? matcher.group(CHANNEL) : null,
+                body,
+                hasAuthor ? matcher.start(AUTHOR) : -1,
+                hasRank ? matcher.start(RANK) : -1,
+                hasChannel ? matcher.start(CHANNEL) : -1,
+                bodyStart
+        );
+    }
+
+}
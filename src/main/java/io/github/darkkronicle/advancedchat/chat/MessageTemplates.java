@@ -0,0 +1,157 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.storage.ChatArchive;
+import io.github.darkkronicle.advancedchat.util.SearchUtils;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits messages into their {@link MessageFields} with the templates in the config.
+ *
+ * A template only counts when the author it finds is in the tab list, which keeps loose templates
+ * like {@code {author}: {body}} from picking up server messages. Every server keeps how often each
+ * template counted. Templates are tried most used first, and one that has counted often enough on a
+ * server is trusted even when the author isn't in the tab list, so players that left or use nicknames
+ * are still found.
+ *
+ * Filters get the fields before a message is shown, and tabs, search and the chat window use the
+ * ones cached on the {@link ChatMessage}.
+ */
+@Environment(EnvType.CLIENT)
+public class MessageTemplates {
+
+    private final static MessageTemplates INSTANCE = new MessageTemplates();
+
+    /**
+     * Hits a template needs on a server before its authors are taken without checking the tab list
+     */
+    private static final int TRUSTED = 8;
+
+    private List<String> source = null;
+
+    private MessageTemplate[] templates = new MessageTemplate[0];
+
+    private final Map<String, int[]> serverHits = new HashMap<>();
+
+    private ClientPlayNetworkHandler handler = null;
+
+    private int[] hits = new int[0];
+
+    /**
+     * Template indexes, most hits first
+     */
+    private int[] order = new int[0];
+
+    /**
+     * The last message parsed. Filters and tabs both ask for the fields of every message, so it's
+     * usually asked for twice in a row.
+     */
+    private String lastText = null;
+
+    private MessageFields lastFields = null;
+
+    public static MessageTemplates getInstance() {
+        return INSTANCE;
+    }
+
+    private MessageTemplates() {
+
+    }
+
+    /**
+     * Finds the fields of a message. Has to be called on the client thread.
+     *
+     * @param handler Network handler with the tab list
+     * @param text Message
+     * @return Fields, or {@link MessageFields#NONE} if no template fits
+     */
+    public MessageFields parse(ClientPlayNetworkHandler handler, String text) {
+        if (handler == null) {
+            return MessageFields.NONE;
+        }
+        update(handler);
+        if (text.equals(lastText)) {
+            return lastFields;
+        }
+        lastText = text;
+        lastFields = find(handler, text);
+        return lastFields;
+    }
+
+    private MessageFields find(ClientPlayNetworkHandler handler, String text) {
+        String stripped = SearchUtils.stripColorCodes(text);
+        MessageFields trusted = null;
+        for (int i = 0; i < order.length; i++) {
+            int template = order[i];
+            MessageFields fields = templates[template].match(stripped);
+            if (fields == null) {
+                continue;
+            }
+            if (fields.getAuthor() == null || PlayerListTracker.getInstance().getPlayer(handler, fields.getAuthor()) != null) {
+                hit(i);
+                return fields;
+            }
+            if (trusted == null && hits[template] >= TRUSTED) {
+                trusted = fields;
+            }
+        }
+        return trusted == null ? MessageFields.NONE : trusted;
+    }
+
+    private void update(ClientPlayNetworkHandler handler) {
+        List<String> strings = ConfigStorage.General.MESSAGE_TEMPLATES.config.getStrings();
+        if (!strings.equals(source)) {
+            source = new ArrayList<>(strings);
+            List<MessageTemplate> compiled = new ArrayList<>();
+            for (String string : source) {
+                try {
+                    compiled.add(MessageTemplate.compile(string));
+                } catch (IllegalArgumentException e) {
+                    LogManager.getLogger().warn("[AdvancedChat] Skipping message template: " + e.getMessage());
+                }
+            }
+            templates = compiled.toArray(new MessageTemplate[0]);
+            // Counts belong to the old indexes
+            serverHits.clear();
+            this.handler = null;
+        }
+        if (this.handler == handler) {
+            return;
+        }
+        this.handler = handler;
+        lastText = null;
+        hits = serverHits.computeIfAbsent(ChatArchive.getServerName(), k -> new int[templates.length]);
+        order = new int[templates.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // Insertion sort, there are only a few templates
+        for (int i = 1; i < order.length; i++) {
+            for (int j = i; j > 0 && hits[order[j]] > hits[order[j - 1]]; j--) {
+                swap(j);
+            }
+        }
+    }
+
+    private void hit(int position) {
+        hits[order[position]]++;
+        for (int j = position; j > 0 && hits[order[j]] > hits[order[j - 1]]; j--) {
+            swap(j);
+        }
+    }
+
+    private void swap(int position) {
+        int template = order[position];
+        order[position] = order[position - 1];
+        order[position - 1] = template;
+    }
+
+}
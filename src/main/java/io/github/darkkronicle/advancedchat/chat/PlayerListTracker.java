@@ -0,0 +1,243 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.util.SearchUtils;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.PlayerListEntry;
+import net.minecraft.network.packet.s2c.play.PlayerListS2CPacket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Keeps track of players in the tab list.
+ *
+ * Player names are indexed so that finding who sent a message is a few map lookups. Every player is
+ * indexed by their exact names (display name without color codes and profile name) and by the
+ * words the message owner regex finds in the name they're shown with. The index follows the tab
+ * list as players join, leave or get renamed, and is built again when the regex changes or on a new
+ * server.
+ */
+@Environment(EnvType.CLIENT)
+public class PlayerListTracker {
+
+    private final static PlayerListTracker INSTANCE = new PlayerListTracker();
+
+    /**
+     * Most words of a message that are looked up
+     */
+    private static final int WORD_LIMIT = 1000;
+
+    private final Map<String, List<PlayerListEntry>> names = new HashMap<>();
+
+    private final Map<String, List<PlayerListEntry>> words = new HashMap<>();
+
+    /**
+     * Keys each player was put in the maps under, so they can be taken out again
+     */
+    private final Map<UUID, Indexed> indexed = new HashMap<>();
+
+    private ClientPlayNetworkHandler handler = null;
+
+    private String ownerRegex = null;
+
+    private Pattern ownerPattern = null;
+
+    public static PlayerListTracker getInstance() {
+        return INSTANCE;
+    }
+
+    private PlayerListTracker() {
+
+    }
+
+    /**
+     * Called when a player is added to the tab list.
+     *
+     * Requesting the skin starts the download in the background, so it is usually loaded
+     * by the time the player's first message needs a chat head.
+     */
+    public void onPlayerAdded(PlayerListEntry entry) {
+        if (ConfigStorage.General.CHAT_HEADS.config.getBooleanValue()) {
+            entry.getSkinTexture();
+        }
+    }
+
+    /**
+     * Called after the tab list changed.
+     */
+    public void onPlayerList(ClientPlayNetworkHandler handler, PlayerListS2CPacket packet) {
+        PlayerListS2CPacket.Action action = packet.getAction();
+        if (action != PlayerListS2CPacket.Action.ADD_PLAYER && action != PlayerListS2CPacket.Action.REMOVE_PLAYER && action != PlayerListS2CPacket.Action.UPDATE_DISPLAY_NAME) {
+            return;
+        }
+        if (!isCurrent(handler)) {
+            // Gets built the next time it's used
+            return;
+        }
+        for (PlayerListS2CPacket.Entry entry : packet.getEntries()) {
+            UUID id = entry.getProfile().getId();
+            remove(id);
+            PlayerListEntry player = handler.getPlayerListEntry(id);
+            if (player != null) {
+                add(player);
+            }
+        }
+    }
+
+    /**
+     * Finds who sent a message.
+     *
+     * Words the owner regex finds in the message are looked up in order. A word that is exactly
+     * someone's name counts if it comes no later than the first word that is part of a name.
+     *
+     * @param handler Network handler with the tab list
+     * @param text Message
+     * @return Owner or null if it can't be found
+     */
+    public MessageOwner getAuthor(ClientPlayNetworkHandler handler, String text) {
+        if (handler == null) {
+            return null;
+        }
+        if (!isCurrent(handler)) {
+            rebuild(handler);
+        }
+        if (ownerPattern == null) {
+            return null;
+        }
+        PlayerListEntry exact = null;
+        int exactStart = 0;
+        String exactName = null;
+        Matcher matcher = ownerPattern.matcher(SearchUtils.stripColorCodes(text));
+        for (int i = 0; i < WORD_LIMIT && matcher.find(); i++) {
+            String word = matcher.group();
+            if (exact == null) {
+                List<PlayerListEntry> found = names.get(word);
+                if (found != null) {
+                    exact = found.get(0);
+                    exactStart = matcher.start();
+                    exactName = word;
+                }
+            }
+            List<PlayerListEntry> found = words.get(word);
+            if (found != null) {
+                if (exact != null && exactStart <= matcher.start()) {
+                    return new MessageOwner(exactName, exact);
+                }
+                return new MessageOwner(word, found.get(0));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds a player by their name or a word of the name they're shown with.
+     *
+     * @return Player or null if nobody in the tab list has that name
+     */
+    public PlayerListEntry getPlayer(ClientPlayNetworkHandler handler, String name) {
+        if (handler == null) {
+            return null;
+        }
+        if (!isCurrent(handler)) {
+            rebuild(handler);
+        }
+        List<PlayerListEntry> found = names.get(name);
+        if (found == null) {
+            found = words.get(name);
+        }
+        return found == null ? null : found.get(0);
+    }
+
+    private boolean isCurrent(ClientPlayNetworkHandler handler) {
+        return this.handler == handler && ConfigStorage.General.MESSAGE_OWNER_REGEX.config.getStringValue().equals(ownerRegex);
+    }
+
+    private void rebuild(ClientPlayNetworkHandler handler) {
+        this.handler = handler;
+        names.clear();
+        words.clear();
+        indexed.clear();
+        ownerRegex = ConfigStorage.General.MESSAGE_OWNER_REGEX.config.getStringValue();
+        try {
+            ownerPattern = Pattern.compile(ownerRegex);
+        } catch (PatternSyntaxException e) {
+            ownerPattern = null;
+        }
+        if (handler == null || ownerPattern == null) {
+            return;
+        }
+        for (PlayerListEntry player : handler.getPlayerList()) {
+            add(player);
+        }
+    }
+
+    private void add(PlayerListEntry player) {
+        Indexed keys = new Indexed(player);
+        String profileName = player.getProfile().getName();
+        String displayName = player.getDisplayName() == null ? null : SearchUtils.stripColorCodes(player.getDisplayName().getString());
+        if (displayName != null) {
+            keys.names.add(displayName);
+        }
+        if (profileName != null) {
+            keys.names.add(profileName);
+        }
+        String shown = displayName == null ? profileName : displayName;
+        if (shown != null && ownerPattern != null) {
+            Matcher matcher = ownerPattern.matcher(shown);
+            for (int i = 0; i < WORD_LIMIT && matcher.find(); i++) {
+                keys.words.add(matcher.group());
+            }
+        }
+        for (String name : keys.names) {
+            names.computeIfAbsent(name, k -> new ArrayList<>(1)).add(player);
+        }
+        for (String word : keys.words) {
+            words.computeIfAbsent(word, k -> new ArrayList<>(1)).add(player);
+        }
+        indexed.put(player.getProfile().getId(), keys);
+    }
+
+    private void remove(UUID id) {
+        Indexed keys = indexed.remove(id);
+        if (keys == null) {
+            return;
+        }
+        removeAll(names, keys.names, keys.player);
+        removeAll(words, keys.words, keys.player);
+    }
+
+    private static void removeAll(Map<String, List<PlayerListEntry>> map, List<String> keys, PlayerListEntry player) {
+        for (String key : keys) {
+            List<PlayerListEntry> players = map.get(key);
+            if (players == null) {
+                continue;
+            }
+            players.remove(player);
+            if (players.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static class Indexed {
+
+        private final PlayerListEntry player;
+        private final List<String> names = new ArrayList<>(2);
+        private final List<String> words = new ArrayList<>(2);
+
+        private Indexed(PlayerListEntry player) {
+            this.player = player;
+        }
+
+    }
+
+}
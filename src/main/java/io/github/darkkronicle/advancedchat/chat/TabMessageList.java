@@ -0,0 +1,80 @@
+package io.github.darkkronicle.advancedchat.chat;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Read only list of the {@link ChatHistory} messages in one tab, newest first.
+ *
+ * Messages are kept oldest first in an array with a moving start, so new messages and evicting the
+ * oldest ones don't shift anything. {@link ChatHistory} keeps it up to date and windows hold on to it
+ * instead of copying messages.
+ */
+@Environment(EnvType.CLIENT)
+public class TabMessageList extends AbstractList<ChatMessage> {
+
+    private ChatMessage[] messages = new ChatMessage[16];
+    private int head = 0;
+    private int tail = 0;
+
+    TabMessageList() {
+
+    }
+
+    @Override
+    public ChatMessage get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return messages[tail - 1 - index];
+    }
+
+    @Override
+    public int size() {
+        return tail - head;
+    }
+
+    void addNewest(ChatMessage message) {
+        if (tail == messages.length) {
+            if (head > 0) {
+                compact();
+            }
+            if (tail == messages.length) {
+                messages = Arrays.copyOf(messages, messages.length * 2);
+            }
+        }
+        messages[tail++] = message;
+        modCount++;
+    }
+
+    /**
+     * Drops the oldest message if it's the one given.
+     */
+    void removeOldest(ChatMessage message) {
+        if (head < tail && messages[head] == message) {
+            messages[head++] = null;
+            modCount++;
+            if (head > 16 && head * 2 > tail) {
+                compact();
+            }
+        }
+    }
+
+    void reset() {
+        Arrays.fill(messages, head, tail, null);
+        head = 0;
+        tail = 0;
+        modCount++;
+    }
+
+    private void compact() {
+        System.arraycopy(messages, head, messages, 0, tail - head);
+        Arrays.fill(messages, tail - head, tail, null);
+        tail -= head;
+        head = 0;
+    }
+
+}
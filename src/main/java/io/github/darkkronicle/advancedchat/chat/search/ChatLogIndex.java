@@ -0,0 +1,191 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from word to the messages that contain it.
+ *
+ * Messages are identified by a sequence number that increases by one for every message added,
+ * and they have to be removed in the same order they were added (oldest first). Words are runs of
+ * letters and digits, lower cased, so the index can only narrow a search down. Whoever uses the
+ * candidates still has to check them against the real query.
+ */
+@Environment(EnvType.CLIENT)
+public class ChatLogIndex {
+
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+
+    public void add(long sequence, String text) {
+        for (String token : tokenize(text)) {
+            tokens.computeIfAbsent(token, k -> new Postings()).add(sequence);
+        }
+    }
+
+    /**
+     * Removes a message. It must be the oldest one still in the index.
+     */
+    public void remove(long sequence, String text) {
+        for (String token : tokenize(text)) {
+            Postings postings = tokens.get(token);
+            if (postings == null) {
+                continue;
+            }
+            postings.removeOldest(sequence);
+            if (postings.isEmpty()) {
+                tokens.remove(token);
+            }
+        }
+    }
+
+    public void clear() {
+        tokens.clear();
+    }
+
+    public int getTokenCount() {
+        return tokens.size();
+    }
+
+    /**
+     * Finds every message that could contain a substring, ignoring case.
+     *
+     * @param query Substring to look for
+     * @param newest Sequence of the newest message
+     * @param count How many messages are in the index
+     * @return Bits set for the candidates, where bit 0 is the newest message. Null if the query has no
+     * words and so can't be narrowed.
+     */
+    public BitSet getCandidates(String query, long newest, int count) {
+        List<String> queryTokens = new ArrayList<>();
+        split(query, queryTokens);
+        if (queryTokens.isEmpty()) {
+            return null;
+        }
+        boolean openStart = Character.isLetterOrDigit(query.charAt(0));
+        boolean openEnd = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        BitSet result = null;
+        for (int i = 0; i < queryTokens.size(); i++) {
+            // The words at the edges of the query may only be part of a word in the message
+            boolean suffix = i == 0 && openStart;
+            boolean prefix = i == queryTokens.size() - 1 && openEnd;
+            BitSet matches = new BitSet(count);
+            collect(queryTokens.get(i), prefix, suffix, newest, matches);
+            if (result == null) {
+                result = matches;
+            } else {
+                result.and(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void collect(String token, boolean prefix, boolean suffix, long newest, BitSet matches) {
+        if (!prefix && !suffix) {
+            Postings postings = tokens.get(token);
+            if (postings != null) {
+                postings.mark(newest, matches);
+            }
+            return;
+        }
+        if (prefix && !suffix) {
+            for (Postings postings : tokens.subMap(token, token + Character.MAX_VALUE).values()) {
+                postings.mark(newest, matches);
+            }
+            return;
+        }
+        // Suffix or anywhere in the word. The dictionary is a lot smaller than the log, so just walk it.
+        for (Map.Entry<String, Postings> entry : tokens.entrySet()) {
+            String key = entry.getKey();
+            if (prefix ? key.contains(token) : key.endsWith(token)) {
+                entry.getValue().mark(newest, matches);
+            }
+        }
+    }
+
+    /**
+     * Splits text into the distinct words the index stores.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> set = new HashSet<>();
+        split(text, set);
+        return set;
+    }
+
+    private static void split(String text, Collection<String> into) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            } else if (builder.length() > 0) {
+                into.add(builder.toString());
+                builder.setLength(0);
+            }
+        }
+        if (builder.length() > 0) {
+            into.add(builder.toString());
+        }
+    }
+
+    /**
+     * Sorted list of sequences. Old entries are dropped from the front.
+     */
+    private static class Postings {
+
+        private long[] sequences = new long[4];
+        private int head = 0;
+        private int size = 0;
+
+        private void add(long sequence) {
+            if (size == sequences.length) {
+                if (head > 0) {
+                    compact();
+                }
+                if (size == sequences.length) {
+                    sequences = Arrays.copyOf(sequences, size * 2);
+                }
+            }
+            sequences[size++] = sequence;
+        }
+
+        private void removeOldest(long sequence) {
+            while (head < size && sequences[head] <= sequence) {
+                head++;
+            }
+            if (head > 16 && head * 2 > size) {
+                compact();
+            }
+        }
+
+        private void compact() {
+            System.arraycopy(sequences, head, sequences, 0, size - head);
+            size -= head;
+            head = 0;
+        }
+
+        private boolean isEmpty() {
+            return head >= size;
+        }
+
+        private void mark(long newest, BitSet bits) {
+            for (int i = head; i < size; i++) {
+                bits.set((int) (newest - sequences[i]));
+            }
+        }
+
+    }
+
+}
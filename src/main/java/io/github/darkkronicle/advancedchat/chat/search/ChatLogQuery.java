@@ -0,0 +1,356 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import io.github.darkkronicle.advancedchat.AdvancedChat;
+import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
+import io.github.darkkronicle.advancedchat.config.Filter;
+import io.github.darkkronicle.advancedchat.util.SearchUtils;
+import lombok.Getter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed chat log search.
+ *
+ * Besides plain text the search box understands:
+ * <ul>
+ *     <li>{@code from:Name} - sent by a player. Several of these match any of them.</li>
+ *     <li>{@code tab:Name} - in a tab. Several of these all have to match.</li>
+ *     <li>{@code after:14:00} and {@code before:2021-05-03} - time range. Takes a time of day, a date,
+ *     both ({@code 2021-05-03T14:00}) or how long ago ({@code 30s}, {@code 10m}, {@code 2h}, {@code 1d}).</li>
+ *     <li>{@code "some text"} - literal text.</li>
+ *     <li>{@code /expression/} - regular expression.</li>
+ * </ul>
+ * Any other words are searched for the way the selected {@link Filter.FindType} says. Values with
+ * spaces can be quoted, like {@code tab:"Trade Chat"}.
+ *
+ * Text terms are checked cheapest first, so regular expressions only run on rows that passed
+ * everything else.
+ */
+@Environment(EnvType.CLIENT)
+public class ChatLogQuery {
+
+    @Getter
+    private final List<String> authors = new ArrayList<>();
+
+    @Getter
+    private final List<String> tabs = new ArrayList<>();
+
+    /**
+     * Masks of the currently loaded tabs with each name in {@link #tabs}
+     */
+    @Getter
+    private final List<Long> tabMasks = new ArrayList<>();
+
+    /**
+     * Epoch milliseconds, inclusive
+     */
+    @Getter
+    private long after = Long.MIN_VALUE;
+
+    /**
+     * Epoch milliseconds, exclusive
+     */
+    @Getter
+    private long before = Long.MAX_VALUE;
+
+    /**
+     * Plain text that every match has to contain, used to look up candidates in the index
+     */
+    @Getter
+    private final List<String> literals = new ArrayList<>();
+
+    private final List<Predicate<String>> literalTerms = new ArrayList<>();
+
+    private final List<Pattern> regexTerms = new ArrayList<>();
+
+    private ChatLogQuery() {
+
+    }
+
+    /**
+     * Parses a search.
+     *
+     * @param query What was typed
+     * @param type How words that aren't anything special are interpreted
+     * @param tab Tab that is selected in the screen, or null
+     * @return Parsed query
+     * @throws IllegalArgumentException If a time or regular expression is invalid
+     */
+    public static ChatLogQuery parse(String query, Filter.FindType type, AbstractChatTab tab) {
+        ChatLogQuery parsed = new ChatLogQuery();
+        if (tab != null) {
+            parsed.tabs.add(tab.getName());
+        }
+        List<String> words = new ArrayList<>();
+        boolean structured = false;
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                int end = findClosing(query, i + 1, '"');
+                parsed.addLiteral(query.substring(i + 1, end), type == Filter.FindType.UPPERLOWER);
+                structured = true;
+                i = end + 1;
+                continue;
+            }
+            if (c == '/') {
+                int end = findClosing(query, i + 1, '/');
+                if (end < query.length() && end > i + 1) {
+                    parsed.addRegex(query.substring(i + 1, end).replace("\\/", "/"));
+                    structured = true;
+                    i = end + 1;
+                    continue;
+                }
+            }
+            int colon = -1;
+            int end = i;
+            while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                if (colon < 0 && query.charAt(end) == ':') {
+                    colon = end;
+                }
+                end++;
+            }
+            if (colon > i && colon + 1 < query.length() && !Character.isWhitespace(query.charAt(colon + 1))) {
+                String key = query.substring(i, colon).toLowerCase(Locale.ROOT);
+                if (isOperator(key)) {
+                    String value;
+                    if (query.charAt(colon + 1) == '"') {
+                        end = findClosing(query, colon + 2, '"');
+                        value = query.substring(colon + 2, end);
+                        end++;
+                    } else {
+                        value = query.substring(colon + 1, end);
+                    }
+                    parsed.addOperator(key, value);
+                    structured = true;
+                    i = end;
+                    continue;
+                }
+            }
+            words.add(query.substring(i, end));
+            i = end;
+        }
+        if (!words.isEmpty()) {
+            // Without any syntax the text is used as is, spaces and all
+            parsed.addText(structured ? String.join(" ", words) : query, type);
+        }
+        for (String name : parsed.tabs) {
+            parsed.tabMasks.add(AdvancedChat.chatTab.getMask(name));
+        }
+        return parsed;
+    }
+
+    public boolean hasTabs() {
+        return !tabs.isEmpty();
+    }
+
+    public boolean hasTextTerms() {
+        return !literalTerms.isEmpty() || !regexTerms.isEmpty();
+    }
+
+    public boolean hasTimeRange() {
+        return after != Long.MIN_VALUE || before != Long.MAX_VALUE;
+    }
+
+    /**
+     * @param owner Name of who sent the message, or null
+     */
+    public boolean matchesOwner(String owner) {
+        if (authors.isEmpty()) {
+            return true;
+        }
+        if (owner == null) {
+            return false;
+        }
+        for (String author : authors) {
+            if (author.equalsIgnoreCase(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param mask Tab mask of a message in memory
+     */
+    public boolean matchesTabs(long mask) {
+        for (long tab : tabMasks) {
+            if ((mask & tab) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param names Names of the tabs the message is in
+     */
+    public boolean matchesTabs(String[] names) {
+        for (String tab : tabs) {
+            boolean found = false;
+            for (String name : names) {
+                if (tab.equalsIgnoreCase(name)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean matchesText(String text) {
+        for (Predicate<String> term : literalTerms) {
+            if (!term.test(text)) {
+                return false;
+            }
+        }
+        for (Pattern pattern : regexTerms) {
+            if (!pattern.matcher(text).find()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addOperator(String key, String value) {
+        switch (key) {
+            case "from":
+                authors.add(value);
+                break;
+            case "tab":
+                tabs.add(value);
+                break;
+            case "after":
+                after = Math.max(after, parseTime(value));
+                break;
+            case "before":
+                before = Math.min(before, parseTime(value));
+                break;
+        }
+    }
+
+    private void addText(String text, Filter.FindType type) {
+        switch (type) {
+            case LITERAL:
+                addLiteral(text, false);
+                break;
+            case UPPERLOWER:
+                addLiteral(text, true);
+                break;
+            case REGEX:
+                addRegex(text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addLiteral(String text, boolean ignoreCase) {
+        if (text.isEmpty()) {
+            return;
+        }
+        literals.add(text);
+        if (ignoreCase) {
+            Pattern pattern = SearchUtils.compilePattern(text, Filter.FindType.UPPERLOWER);
+            literalTerms.add(string -> pattern.matcher(string).find());
+        } else {
+            literalTerms.add(string -> string.contains(text));
+        }
+    }
+
+    private void addRegex(String regex) {
+        regexTerms.add(SearchUtils.compilePattern(regex, Filter.FindType.REGEX));
+        String literal = SearchUtils.getRequiredLiteral(regex);
+        if (literal != null) {
+            literals.add(literal);
+        }
+    }
+
+    private static boolean isOperator(String key) {
+        return key.equals("from") || key.equals("tab") || key.equals("after") || key.equals("before");
+    }
+
+    /**
+     * Finds the next unescaped character, or the end of the string.
+     */
+    private static int findClosing(String string, int start, char c) {
+        for (int i = start; i < string.length(); i++) {
+            char at = string.charAt(i);
+            if (at == '\\') {
+                i++;
+            } else if (at == c) {
+                return i;
+            }
+        }
+        return string.length();
+    }
+
+    /**
+     * Turns a time from the search box into epoch milliseconds.
+     *
+     * @param value Time of day, date, date and time, or a duration like {@code 10m} meaning that long ago
+     * @return Epoch milliseconds
+     * @throws IllegalArgumentException If it isn't a time
+     */
+    public static long parseTime(String value) {
+        String trimmed = value.trim();
+        ZoneId zone = ZoneId.systemDefault();
+        if (trimmed.length() > 1 && Character.isDigit(trimmed.charAt(0))) {
+            TimeUnit unit = getUnit(trimmed.charAt(trimmed.length() - 1));
+            if (unit != null) {
+                try {
+                    long amount = Long.parseLong(trimmed.substring(0, trimmed.length() - 1));
+                    return System.currentTimeMillis() - unit.toMillis(amount);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        try {
+            return LocalDateTime.parse(trimmed.replace(' ', 'T')).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDate.parse(trimmed).atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalTime.parse(trimmed).atDate(LocalDate.now(zone)).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        throw new IllegalArgumentException("Unknown time " + value);
+    }
+
+    private static TimeUnit getUnit(char c) {
+        switch (Character.toLowerCase(c)) {
+            case 's':
+                return TimeUnit.SECONDS;
+            case 'm':
+                return TimeUnit.MINUTES;
+            case 'h':
+                return TimeUnit.HOURS;
+            case 'd':
+                return TimeUnit.DAYS;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,219 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs chat log searches on a background thread.
+ *
+ * A search only starts once nothing about it has changed for {@link #DEBOUNCE} milliseconds, and a
+ * new search cancels whatever is running. Progress is published as {@link SearchSnapshot}s that
+ * the screen reads when it draws.
+ *
+ * The rows that get checked are narrowed down before anything is tested. The time range of the query
+ * is found with a binary search over the timestamps, and the candidates from the index are limited to
+ * that range. Each remaining row is then checked with {@link SearchSource#test(int, ChatLogQuery, boolean)}.
+ *
+ * Rows are split into ranges of {@link #TASK_SIZE} that are searched in parallel on a fork/join pool.
+ * Finished ranges are merged in row (time) order and published as soon as every range before them is
+ * done, so results stream in from the newest end without ever reordering.
+ */
+@Environment(EnvType.CLIENT)
+public class ChatLogSearch {
+
+    public static final long DEBOUNCE = 150;
+
+    /**
+     * Rows checked between looking for cancellation
+     */
+    private static final int CHUNK = 512;
+
+    /**
+     * Rows each parallel task searches
+     */
+    private static final int TASK_SIZE = 4096;
+
+    private static final long PROGRESS_INTERVAL = 50;
+
+    /**
+     * Debounces and merges results
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdvancedChat Search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Does the actual matching. Leaves a core for the client.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("AdvancedChat Search Worker " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private volatile SearchSnapshot snapshot = SearchSnapshot.EMPTY;
+
+    private int generation = 0;
+
+    private Future<?> running = null;
+
+    public SearchSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the current search.
+     *
+     * @param source What to search. Has to stay the same while the search runs.
+     * @param candidates Rows that could match, or null to check everything
+     * @param query Parsed search
+     * @param full Search the displayed text instead of just the message
+     */
+    public void schedule(SearchSource source, BitSet candidates, ChatLogQuery query, boolean full) {
+        int id = restart();
+        // Rows are newest first, so the range starts at the newest row before the end of the time range
+        int start = query.getBefore() == Long.MAX_VALUE ? 0 : source.findNotAfter(query.getBefore() - 1);
+        int end = query.getAfter() == Long.MIN_VALUE ? source.size() : source.findNotAfter(query.getAfter() - 1);
+        int total = Math.max(0, end - start);
+        if (candidates != null) {
+            total = start < end ? candidates.get(start, end).cardinality() : 0;
+        }
+        SearchSnapshot previous = snapshot;
+        // Keep showing the old results until there's something new
+        publish(id, new SearchSnapshot(previous.getSource(), previous.getMatches(), previous.getMatchCount(), 0, total, false, null));
+        int count = total;
+        running = EXECUTOR.schedule(() -> run(id, source, candidates, start, end, query, full, count), DEBOUNCE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Shows an error instead of results.
+     */
+    public void fail(String error) {
+        int id = restart();
+        publish(id, new SearchSnapshot(null, new int[0], 0, 0, 0, true, error));
+    }
+
+    /**
+     * Stops the current search and forgets the results.
+     */
+    public void cancel() {
+        int id = restart();
+        publish(id, SearchSnapshot.EMPTY);
+    }
+
+    private synchronized int restart() {
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+        return ++generation;
+    }
+
+    private synchronized void publish(int id, SearchSnapshot result) {
+        if (id == generation) {
+            snapshot = result;
+        }
+    }
+
+    private synchronized boolean isCurrent(int id) {
+        return id == generation;
+    }
+
+    private void run(int id, SearchSource source, BitSet candidates, int start, int end, ChatLogQuery query, boolean full, int total) {
+        AtomicInteger scanned = new AtomicInteger();
+        List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+        for (int from = start; from < end; from += TASK_SIZE) {
+            int taskStart = from;
+            int taskEnd = Math.min(end, from + TASK_SIZE);
+            tasks.add(POOL.submit(() -> searchRange(id, source, candidates, taskStart, taskEnd, query, full, scanned)));
+        }
+        int[] matches = new int[64];
+        int count = 0;
+        try {
+            // Ranges are merged in row order, so results only ever get added to the end
+            for (ForkJoinTask<int[]> task : tasks) {
+                int[] found = null;
+                while (found == null) {
+                    try {
+                        found = task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        publish(id, new SearchSnapshot(source, matches, count, scanned.get(), total, false, null));
+                    }
+                    if (found == null && task.isDone()) {
+                        // Cancelled because a new search started
+                        return;
+                    }
+                }
+                if (count + found.length > matches.length) {
+                    matches = Arrays.copyOf(matches, Math.max(matches.length * 2, count + found.length));
+                }
+                System.arraycopy(found, 0, matches, count, found.length);
+                count += found.length;
+                // Entries below count are never written again, so the array can be shared
+                publish(id, new SearchSnapshot(source, matches, count, scanned.get(), total, false, null));
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (ExecutionException e) {
+            LogManager.getLogger().error("[AdvancedChat] Chat log search failed", e.getCause());
+            publish(id, new SearchSnapshot(source, matches, count, scanned.get(), total, true, String.valueOf(e.getCause())));
+            return;
+        } finally {
+            for (ForkJoinTask<int[]> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        publish(id, new SearchSnapshot(source, matches, count, total, total, true, null));
+    }
+
+    /**
+     * Searches part of the source. Runs on the fork/join pool, so the source has to be safe to read
+     * from several threads.
+     *
+     * @return Rows that matched, or null if the search was replaced
+     */
+    private int[] searchRange(int id, SearchSource source, BitSet candidates, int start, int end, ChatLogQuery query, boolean full, AtomicInteger scanned) {
+        int[] matches = new int[16];
+        int count = 0;
+        int checked = 0;
+        int i = candidates == null ? start : candidates.nextSetBit(start);
+        while (i >= 0 && i < end) {
+            if (source.test(i, query, full)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = i;
+            }
+            checked++;
+            i = candidates == null ? i + 1 : candidates.nextSetBit(i + 1);
+            if (checked % CHUNK == 0) {
+                if (!isCurrent(id)) {
+                    return null;
+                }
+                scanned.addAndGet(CHUNK);
+            }
+        }
+        scanned.addAndGet(checked % CHUNK);
+        return Arrays.copyOf(matches, count);
+    }
+
+}
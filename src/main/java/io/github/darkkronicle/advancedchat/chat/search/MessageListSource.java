@@ -0,0 +1,60 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import io.github.darkkronicle.advancedchat.chat.ChatLogMessage;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.Text;
+
+import java.util.List;
+
+/**
+ * {@link SearchSource} over messages that are in memory. To search off thread, give it a copy of the
+ * list.
+ */
+@Environment(EnvType.CLIENT)
+public class MessageListSource implements SearchSource {
+
+    private final List<ChatLogMessage> messages;
+
+    public MessageListSource(List<ChatLogMessage> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public int size() {
+        return messages.size();
+    }
+
+    @Override
+    public Text getText(int index) {
+        return messages.get(index).getDisplayText();
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        return messages.get(index).getTimestamp();
+    }
+
+    @Override
+    public Text loadText(int index, boolean full) {
+        ChatLogMessage message = messages.get(index);
+        return full ? message.getDisplayText() : message.getOriginalText();
+    }
+
+    @Override
+    public boolean test(int index, ChatLogQuery query, boolean full) {
+        ChatLogMessage message = messages.get(index);
+        if (!query.matchesOwner(message.getOwner() == null ? null : message.getOwner().getName())) {
+            return false;
+        }
+        if (!query.matchesTabs(message.getTabs())) {
+            return false;
+        }
+        if (!query.hasTextTerms()) {
+            return true;
+        }
+        Text text = full ? message.getDisplayText() : message.getOriginalText();
+        return query.matchesText(text.getString());
+    }
+
+}
@@ -0,0 +1,50 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import lombok.Value;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+/**
+ * An immutable view of a search at one point in time. A running search publishes a new one every
+ * so often, so whoever draws the results never sees them change underneath.
+ */
+@Environment(EnvType.CLIENT)
+@Value
+public class SearchSnapshot {
+
+    public static final SearchSnapshot EMPTY = new SearchSnapshot(null, new int[0], 0, 0, 0, true, null);
+
+    /**
+     * What was searched
+     */
+    SearchSource source;
+
+    /**
+     * Positions in the source that matched, in source order. Only the first {@link #matchCount} are valid.
+     */
+    int[] matches;
+
+    int matchCount;
+
+    /**
+     * How many entries of the source have been checked so far
+     */
+    int scanned;
+
+    /**
+     * How many entries have to be checked in total
+     */
+    int total;
+
+    boolean done;
+
+    /**
+     * Why the search couldn't run, or null
+     */
+    String error;
+
+    public float getProgress() {
+        return total == 0 ? 1 : (float) scanned / total;
+    }
+
+}
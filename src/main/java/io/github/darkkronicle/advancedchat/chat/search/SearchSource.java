@@ -0,0 +1,68 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.Text;
+
+/**
+ * Something the chat log can search through and display. Rows are newest first.
+ *
+ * {@link #getTimestamp(int)} and {@link #test(int, ChatLogQuery, boolean)} get called from several
+ * search threads at once, so they can't rely on anything the client thread changes and can't keep
+ * state of their own.
+ */
+@Environment(EnvType.CLIENT)
+public interface SearchSource {
+
+    int size();
+
+    /**
+     * Text that gets drawn for a row. Only called on the client thread.
+     */
+    Text getText(int index);
+
+    /**
+     * Epoch milliseconds of a row. Never increases with the index, so it can be binary searched.
+     */
+    long getTimestamp(int index);
+
+    /**
+     * Text of a row without going through any cache, so it is safe from any thread.
+     *
+     * @param index Row
+     * @param full The text as it is displayed (with time) instead of just the message
+     * @return Text or null if the row couldn't be read
+     */
+    Text loadText(int index, boolean full);
+
+    /**
+     * Checks if a row should be in the results. The time range of the query has already been
+     * handled by the caller.
+     *
+     * @param index Row
+     * @param query Query to check the row against
+     * @param full Test against the text as it is displayed (with time) instead of just the message
+     */
+    boolean test(int index, ChatLogQuery query, boolean full);
+
+    /**
+     * Finds the newest row that is not newer than a time.
+     *
+     * @param time Epoch milliseconds
+     * @return Row, or the size if every row is newer
+     */
+    default int findNotAfter(long time) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getTimestamp(mid) > time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,106 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Index from tab id to the sequences of the messages in that tab.
+ *
+ * Like {@link TimeIndex} messages are added with increasing sequences and dropped oldest first, so
+ * every tab is just a growing array with a moving start.
+ */
+@Environment(EnvType.CLIENT)
+public class TabIndex {
+
+    private final long[][] sequences = new long[Long.SIZE][];
+    private final int[] heads = new int[Long.SIZE];
+    private final int[] sizes = new int[Long.SIZE];
+
+    /**
+     * Adds a message to every tab in its mask.
+     */
+    public void add(long sequence, long tabs) {
+        for (; tabs != 0; tabs &= tabs - 1) {
+            int tab = Long.numberOfTrailingZeros(tabs);
+            long[] array = sequences[tab];
+            if (array == null) {
+                array = new long[16];
+                sequences[tab] = array;
+            }
+            if (sizes[tab] == array.length) {
+                if (heads[tab] > 0) {
+                    compact(tab);
+                }
+                if (sizes[tab] == array.length) {
+                    array = Arrays.copyOf(array, array.length * 2);
+                    sequences[tab] = array;
+                }
+            }
+            array[sizes[tab]++] = sequence;
+        }
+    }
+
+    /**
+     * Drops every message older than a sequence.
+     */
+    public void removeBefore(long sequence) {
+        for (int tab = 0; tab < Long.SIZE; tab++) {
+            long[] array = sequences[tab];
+            if (array == null) {
+                continue;
+            }
+            while (heads[tab] < sizes[tab] && array[heads[tab]] < sequence) {
+                heads[tab]++;
+            }
+            if (heads[tab] > 16 && heads[tab] * 2 > sizes[tab]) {
+                compact(tab);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(heads, 0);
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * How many messages are in a tab
+     */
+    public int getCount(int tab) {
+        return sizes[tab] - heads[tab];
+    }
+
+    /**
+     * Finds the messages that are in any of the tabs in a mask.
+     *
+     * @param tabs Tab mask
+     * @param newest Sequence of the newest message
+     * @param count Amount of messages
+     * @return Bits set at the positions (newest first) of the messages
+     */
+    public BitSet getPositions(long tabs, long newest, int count) {
+        BitSet positions = new BitSet(count);
+        long oldest = newest - count + 1;
+        for (; tabs != 0; tabs &= tabs - 1) {
+            int tab = Long.numberOfTrailingZeros(tabs);
+            long[] array = sequences[tab];
+            for (int i = sizes[tab] - 1; i >= heads[tab] && array[i] >= oldest; i--) {
+                if (array[i] <= newest) {
+                    positions.set((int) (newest - array[i]));
+                }
+            }
+        }
+        return positions;
+    }
+
+    private void compact(int tab) {
+        long[] array = sequences[tab];
+        System.arraycopy(array, heads[tab], array, 0, sizes[tab] - heads[tab]);
+        sizes[tab] -= heads[tab];
+        heads[tab] = 0;
+    }
+
+}
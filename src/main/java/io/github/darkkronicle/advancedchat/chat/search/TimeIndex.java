@@ -0,0 +1,103 @@
+package io.github.darkkronicle.advancedchat.chat.search;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Sparse index from time to message sequence.
+ *
+ * Only every {@link #INTERVAL}th message is sampled, which is enough to narrow a lookup down to a
+ * handful of messages. Like {@link ChatLogIndex} messages are added with increasing sequences and
+ * dropped oldest first.
+ */
+@Environment(EnvType.CLIENT)
+public class TimeIndex {
+
+    public static final int INTERVAL = 64;
+
+    private long[] sequences = new long[16];
+    private long[] timestamps = new long[16];
+    private int head = 0;
+    private int size = 0;
+
+    public void add(long sequence, long timestamp) {
+        if (sequence % INTERVAL != 0) {
+            return;
+        }
+        if (size == sequences.length) {
+            if (head > 0) {
+                compact();
+            }
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+            }
+        }
+        sequences[size] = sequence;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Drops every sample older than a sequence.
+     */
+    public void removeBefore(long sequence) {
+        while (head < size && sequences[head] < sequence) {
+            head++;
+        }
+        if (head > 16 && head * 2 > size) {
+            compact();
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Gets the newest sampled sequence that is not newer than a time. Every message up to it is at or
+     * before the time as well.
+     *
+     * @return Sequence or {@link Long#MIN_VALUE} if every sample is newer
+     */
+    public long getFloor(long time) {
+        int index = findAfter(time) - 1;
+        return index < head ? Long.MIN_VALUE : sequences[index];
+    }
+
+    /**
+     * Gets the oldest sampled sequence that is newer than a time. Every message from it on is newer
+     * as well.
+     *
+     * @return Sequence or {@link Long#MAX_VALUE} if no sample is newer
+     */
+    public long getCeiling(long time) {
+        int index = findAfter(time);
+        return index >= size ? Long.MAX_VALUE : sequences[index];
+    }
+
+    private int findAfter(long time) {
+        int low = head;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void compact() {
+        System.arraycopy(sequences, head, sequences, 0, size - head);
+        System.arraycopy(timestamps, head, timestamps, 0, size - head);
+        size -= head;
+        head = 0;
+    }
+
+}
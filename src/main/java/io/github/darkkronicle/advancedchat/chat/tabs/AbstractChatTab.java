@@ -1,6 +1,7 @@
 package io.github.darkkronicle.advancedchat.chat.tabs;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -22,6 +23,12 @@ public abstract class AbstractChatTab {
     private int unread = 0;
     protected boolean showUnread;
 
+    /**
+     * Position in {@link MainChatTab#getAllChatTabs()}, used as the bit for this tab in message tab masks
+     */
+    @EqualsAndHashCode.Exclude
+    private int id = -1;
+
     public AbstractChatTab(String name, String abreviation, ColorUtil.SimpleColor mainColor, ColorUtil.SimpleColor borderColor, ColorUtil.SimpleColor innerColor, boolean showUnread) {
         this.name = name;
         this.abreviation = abreviation;
@@ -39,6 +46,13 @@ public abstract class AbstractChatTab {
         this.unread = 0;
     }
 
+    /**
+     * The bit of this tab in message tab masks, or 0 if it doesn't have an id
+     */
+    public long getMask() {
+        return id >= 0 && id < Long.SIZE ? 1L << id : 0;
+    }
+
 
     /**
      * If the inputted message should be put into the chat tab.
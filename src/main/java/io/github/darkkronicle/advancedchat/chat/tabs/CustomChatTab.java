@@ -5,7 +5,6 @@ import io.github.darkkronicle.advancedchat.util.ColorUtil;
 import lombok.Getter;
 import io.github.darkkronicle.advancedchat.config.ChatTab;
 import io.github.darkkronicle.advancedchat.util.SearchUtils;
-import io.github.darkkronicle.advancedchat.util.FluidText;
 import net.minecraft.text.Text;
 
 /**
@@ -20,6 +19,8 @@ public class CustomChatTab extends AbstractChatTab {
     @Getter
     private String findString;
     @Getter
+    private Filter.MessageField field;
+    @Getter
     private boolean forward;
     @Getter
     private String startingMessage;
@@ -32,6 +33,7 @@ public class CustomChatTab extends AbstractChatTab {
         this.storage = storage;
         this.findType = storage.getFind();
         this.findString = storage.getFindString().config.getStringValue();
+        this.field = storage.getMessageField();
         this.forward = storage.getForward().config.getBooleanValue();
         this.startingMessage = storage.getStartingMessage().config.getStringValue();
     }
@@ -39,7 +41,6 @@ public class CustomChatTab extends AbstractChatTab {
 
     @Override
     public boolean shouldAdd(Text text) {
-        FluidText newText = new FluidText(text);
-        return SearchUtils.isMatch(newText.getString(), findString, findType);
+        return SearchUtils.isMatch(text.getString(), findString, findType);
     }
 }
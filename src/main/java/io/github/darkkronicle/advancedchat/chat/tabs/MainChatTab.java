@@ -1,14 +1,18 @@
 package io.github.darkkronicle.advancedchat.chat.tabs;
 
+import io.github.darkkronicle.advancedchat.AdvancedChat;
 import io.github.darkkronicle.advancedchat.chat.ChatHistory;
 import io.github.darkkronicle.advancedchat.chat.ChatMessage;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
 import lombok.Getter;
 import io.github.darkkronicle.advancedchat.config.ChatTab;
 import net.minecraft.text.*;
+import org.apache.logging.log4j.LogManager;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main chat tab that manages other chat tabs.
@@ -19,6 +23,18 @@ public class MainChatTab extends AbstractChatTab {
     @Getter
     private ArrayList<CustomChatTab> customChatTabs = new ArrayList<>();
 
+    /**
+     * Matches messages against all custom tabs at once
+     */
+    @Getter
+    private TabClassifier classifier = null;
+
+    /**
+     * Tabs in the config that didn't fit in a tab mask. They stay in the config but aren't loaded.
+     */
+    @Getter
+    private int unloadedTabs = 0;
+
     public static boolean nextSend = false;
 
     public MainChatTab() {
@@ -44,23 +60,114 @@ public class MainChatTab extends AbstractChatTab {
      * Method used for loading in tabs from the config.
      */
     public void setUpTabs() {
+        ArrayList<AbstractChatTab> previous = allChatTabs;
         customChatTabs = new ArrayList<>();
         allChatTabs = new ArrayList<>();
         allChatTabs.add(this);
+        setId(0);
+        unloadedTabs = Math.max(0, ConfigStorage.TABS.size() - TabClassifier.MAX_TABS);
+        if (unloadedTabs > 0) {
+            LogManager.getLogger().warn("[AdvancedChat] Only the first {} tabs are loaded, {} are kept in the config", TabClassifier.MAX_TABS, unloadedTabs);
+        }
         for (ChatTab tab : ConfigStorage.TABS) {
+            if (customChatTabs.size() >= TabClassifier.MAX_TABS) {
+                break;
+            }
             CustomChatTab customTab = new CustomChatTab(tab);
+            customTab.setId(allChatTabs.size());
             customChatTabs.add(customTab);
             allChatTabs.add(customTab);
         }
-        for (ChatMessage message : ChatHistory.getInstance().getMessages()) {
-            ArrayList<AbstractChatTab> tabs = new ArrayList<>();
-            for (AbstractChatTab t : allChatTabs) {
-                if (t.shouldAdd(message.getOriginalText())) {
-                    tabs.add(t);
+        classifier = TabClassifier.build(customChatTabs);
+        if (!previous.isEmpty()) {
+            int[] remap = getRemap(previous);
+            // Anything still holding an old tab keeps showing the tab with the same name
+            for (int i = 1; i < remap.length; i++) {
+                previous.get(i).setId(remap[i]);
+            }
+            // Until the history is matched again it stays in the tabs it was in
+            for (ChatMessage message : ChatHistory.getInstance().getMessages()) {
+                message.setTabs(remapMask(message.getTabs(), remap));
+            }
+            ChatHistory.getInstance().reindex();
+            // Windows hold the list of their old tab id, tabs that are gone end up empty
+            AdvancedChatHud.getInstance().refresh();
+            AdvancedChat.getChatLogData().remapTabs(remap);
+        }
+        TabReclassifier.getInstance().reclassify(classifier, getMask());
+    }
+
+    /**
+     * Moves a tab mask to the new tab ids. Masks that end up empty are put in the main tab.
+     *
+     * @param mask Tab mask
+     * @param remap New id for every old id, or -1 if the tab is gone
+     */
+    public static long remapMask(long mask, int[] remap) {
+        long remapped = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            int id = Long.numberOfTrailingZeros(mask);
+            if (id < remap.length && remap[id] >= 0) {
+                remapped |= 1L << remap[id];
+            }
+        }
+        return remapped == 0 ? 1 : remapped;
+    }
+
+    /**
+     * Finds where each tab went by name after the tabs were loaded again.
+     *
+     * @param previous Tabs before
+     * @return New id for every old id, or -1 if the tab is gone
+     */
+    private int[] getRemap(List<AbstractChatTab> previous) {
+        int[] remap = new int[previous.size()];
+        // The main tab is always first
+        remap[0] = 0;
+        for (int i = 1; i < remap.length; i++) {
+            remap[i] = -1;
+            for (int j = 1; j < allChatTabs.size(); j++) {
+                if (allChatTabs.get(j).getName().equals(previous.get(i).getName())) {
+                    remap[i] = j;
+                    break;
                 }
             }
-            message.setTabs(tabs);
         }
+        return remap;
+    }
+
+    /**
+     * @return Tab with an id, or null
+     */
+    public AbstractChatTab getTab(int id) {
+        return id >= 0 && id < allChatTabs.size() ? allChatTabs.get(id) : null;
+    }
+
+    /**
+     * Gets the tabs in a tab mask in id order.
+     */
+    public List<AbstractChatTab> getTabs(long mask) {
+        List<AbstractChatTab> tabs = new ArrayList<>(Long.bitCount(mask));
+        for (; mask != 0; mask &= mask - 1) {
+            AbstractChatTab tab = getTab(Long.numberOfTrailingZeros(mask));
+            if (tab != null) {
+                tabs.add(tab);
+            }
+        }
+        return tabs;
+    }
+
+    /**
+     * Mask of every tab with a name, ignoring case
+     */
+    public long getMask(String name) {
+        long mask = 0;
+        for (AbstractChatTab tab : allChatTabs) {
+            if (tab.getName().equalsIgnoreCase(name)) {
+                mask |= tab.getMask();
+            }
+        }
+        return mask;
     }
 
 }
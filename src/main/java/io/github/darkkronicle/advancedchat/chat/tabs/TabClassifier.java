@@ -0,0 +1,337 @@
+package io.github.darkkronicle.advancedchat.chat.tabs;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import io.github.darkkronicle.advancedchat.config.Filter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds every {@link CustomChatTab} a message belongs in with one pass over the text.
+ *
+ * Literal find strings go into two Aho-Corasick automata, one case sensitive and one that ignores
+ * case, so all of them are found in a single scan each. Regular expressions are compiled once here
+ * instead of for every message. Tabs that only look at one part of a message, like the author, are
+ * grouped by that part and each group only scans its part.
+ *
+ * Results are tab masks where bit 0 is the {@link MainChatTab} and bit i is custom tab i - 1, the
+ * same as the tab ids.
+ */
+@Environment(EnvType.CLIENT)
+public class TabClassifier {
+
+    /**
+     * Custom tabs that fit in a mask next to the main tab
+     */
+    public static final int MAX_TABS = 63;
+
+    /**
+     * Matchers for the tabs that look at each {@link Filter.MessageField}, null where no tab does
+     */
+    private final Group[] groups;
+
+    /**
+     * Tabs that match everything. Tabs that match all of one part are in the group of that part.
+     */
+    private final long always;
+
+    /**
+     * Tabs that stop the message from going further
+     */
+    private final long stops;
+
+    private TabClassifier(Group[] groups, long always, long stops) {
+        this.groups = groups;
+        this.always = always;
+        this.stops = stops;
+    }
+
+    /**
+     * Builds a classifier for tabs.
+     *
+     * @param tabs Custom tabs in order
+     * @throws IllegalArgumentException If there are more than {@link #MAX_TABS}
+     */
+    public static TabClassifier build(List<CustomChatTab> tabs) {
+        if (tabs.size() > MAX_TABS) {
+            throw new IllegalArgumentException("Too many tabs: " + tabs.size());
+        }
+        Group[] groups = new Group[Filter.MessageField.values().length];
+        long always = 0;
+        long stops = 0;
+        for (int i = 0; i < tabs.size(); i++) {
+            CustomChatTab tab = tabs.get(i);
+            long bit = 1L << (i + 1);
+            if (!tab.isForward()) {
+                stops |= bit;
+            }
+            if (tab.getFindType() == Filter.FindType.ALL && tab.getField() == Filter.MessageField.FULL) {
+                always |= bit;
+                continue;
+            }
+            int field = tab.getField().ordinal();
+            if (groups[field] == null) {
+                groups[field] = new Group();
+            }
+            groups[field].add(tab, bit);
+        }
+        for (Group group : groups) {
+            if (group != null) {
+                group.build();
+            }
+        }
+        return new TabClassifier(groups, always, stops);
+    }
+
+    /**
+     * Finds every tab a message matches, ignoring forwarding. The main tab isn't included.
+     *
+     * @param text Message
+     * @param fields Fields of the message
+     */
+    public long match(String text, MessageFields fields) {
+        long matches = always;
+        for (Filter.MessageField field : Filter.MessageField.values()) {
+            Group group = groups[field.ordinal()];
+            if (group == null) {
+                continue;
+            }
+            String value = field.getValue(text, fields);
+            if (value != null) {
+                matches |= group.match(value);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the tabs a message goes into. Tabs are checked in order and the first one that doesn't
+     * forward stops the rest. If none of them stop it, the main tab is included.
+     *
+     * @param text Message
+     * @param fields Fields of the message
+     * @param skip Tabs the message is already in. These are left out and don't stop anything.
+     * @return Mask of tabs
+     */
+    public long classify(String text, MessageFields fields, long skip) {
+        long matches = match(text, fields) & ~skip;
+        long stopping = matches & stops;
+        if (stopping == 0) {
+            return matches | 1;
+        }
+        // Keep everything up to and including the lowest stopping tab
+        long lowest = Long.lowestOneBit(stopping);
+        return matches & (lowest | (lowest - 1));
+    }
+
+    private static String foldCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = foldCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private static char foldCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Matches the find strings of the tabs that look at one part of messages.
+     */
+    private static class Group {
+
+        private final Automaton literal = new Automaton();
+
+        /**
+         * Matched against text with ASCII letters lower cased, the same as {@link Pattern#CASE_INSENSITIVE}
+         */
+        private final Automaton ignoreCase = new Automaton();
+
+        private final List<Pattern> patterns = new ArrayList<>();
+
+        private final List<Long> patternBits = new ArrayList<>();
+
+        /**
+         * Tabs that match any message that has this part
+         */
+        private long always = 0;
+
+        private void add(CustomChatTab tab, long bit) {
+            String find = tab.getFindString();
+            switch (tab.getFindType()) {
+                case ALL:
+                    always |= bit;
+                    break;
+                case LITERAL:
+                    if (find.isEmpty()) {
+                        always |= bit;
+                    } else {
+                        literal.add(find, bit);
+                    }
+                    break;
+                case UPPERLOWER:
+                    if (find.isEmpty()) {
+                        always |= bit;
+                    } else {
+                        ignoreCase.add(foldCase(find), bit);
+                    }
+                    break;
+                case REGEX:
+                    try {
+                        patterns.add(Pattern.compile(find));
+                        patternBits.add(bit);
+                    } catch (PatternSyntaxException e) {
+                        LogManager.getLogger().warn("[AdvancedChat] Tab {} has an invalid regex and won't match anything", tab.getName(), e);
+                    }
+                    break;
+            }
+        }
+
+        private void build() {
+            literal.build();
+            ignoreCase.build();
+        }
+
+        private long match(String text) {
+            long matches = always | literal.find(text, false) | ignoreCase.find(text, true);
+            for (int i = 0; i < patterns.size(); i++) {
+                long bit = patternBits.get(i);
+                if ((matches & bit) == 0 && patterns.get(i).matcher(text).find()) {
+                    matches |= bit;
+                }
+            }
+            return matches;
+        }
+
+    }
+
+    /**
+     * Aho-Corasick automaton where every pattern carries a bit mask.
+     */
+    private static class Automaton {
+
+        private char[][] keys = new char[16][];
+        private int[][] targets = new int[16][];
+        private int[] sizes = new int[16];
+        private long[] outputs = new long[16];
+        private int[] fails = new int[16];
+        private int nodes = 1;
+        private long all = 0;
+
+        private Automaton() {
+            keys[0] = new char[0];
+            targets[0] = new int[0];
+        }
+
+        private void add(String pattern, long bit) {
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                int next = getChild(node, c);
+                if (next < 0) {
+                    next = addNode();
+                    addChild(node, c, next);
+                }
+                node = next;
+            }
+            outputs[node] |= bit;
+            all |= bit;
+        }
+
+        private void build() {
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int i = 0; i < sizes[0]; i++) {
+                int child = targets[0][i];
+                fails[child] = 0;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int i = 0; i < sizes[node]; i++) {
+                    char c = keys[node][i];
+                    int child = targets[node][i];
+                    int fail = fails[node];
+                    while (fail != 0 && getChild(fail, c) < 0) {
+                        fail = fails[fail];
+                    }
+                    int next = getChild(fail, c);
+                    fails[child] = next >= 0 ? next : 0;
+                    outputs[child] |= outputs[fails[child]];
+                    queue.add(child);
+                }
+            }
+        }
+
+        private long find(String text, boolean fold) {
+            if (all == 0) {
+                return 0;
+            }
+            long found = 0;
+            int node = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (fold) {
+                    c = foldCase(c);
+                }
+                int next = getChild(node, c);
+                while (next < 0 && node != 0) {
+                    node = fails[node];
+                    next = getChild(node, c);
+                }
+                node = next < 0 ? 0 : next;
+                found |= outputs[node];
+                if (found == all) {
+                    break;
+                }
+            }
+            return found;
+        }
+
+        private int getChild(int node, char c) {
+            char[] nodeKeys = keys[node];
+            for (int i = 0; i < sizes[node]; i++) {
+                if (nodeKeys[i] == c) {
+                    return targets[node][i];
+                }
+            }
+            return -1;
+        }
+
+        private void addChild(int node, char c, int child) {
+            int size = sizes[node];
+            if (size == keys[node].length) {
+                int length = Math.max(2, size * 2);
+                keys[node] = Arrays.copyOf(keys[node], length);
+                targets[node] = Arrays.copyOf(targets[node], length);
+            }
+            keys[node][size] = c;
+            targets[node][size] = child;
+            sizes[node]++;
+        }
+
+        private int addNode() {
+            if (nodes == outputs.length) {
+                int length = nodes * 2;
+                keys = Arrays.copyOf(keys, length);
+                targets = Arrays.copyOf(targets, length);
+                sizes = Arrays.copyOf(sizes, length);
+                outputs = Arrays.copyOf(outputs, length);
+                fails = Arrays.copyOf(fails, length);
+            }
+            keys[nodes] = new char[0];
+            targets[nodes] = new int[0];
+            return nodes++;
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package io.github.darkkronicle.advancedchat.chat.tabs;
+
+import io.github.darkkronicle.advancedchat.chat.ChatHistory;
+import io.github.darkkronicle.advancedchat.chat.ChatMessage;
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import org.apache.logging.log4j.LogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Matches the chat history against the tabs again after they were edited.
+ *
+ * The history is copied on the client thread and split into chunks that are matched on a fork/join
+ * pool. Once every chunk is done the new tabs are all set at once on the client thread, so windows
+ * keep showing the old tabs until then. Starting again drops whatever is still running.
+ */
+@Environment(EnvType.CLIENT)
+public class TabReclassifier {
+
+    private final static TabReclassifier INSTANCE = new TabReclassifier();
+
+    /**
+     * Messages matched in one go before splitting stops
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * Leaves a core for the client.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("AdvancedChat Tab Worker " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public static TabReclassifier getInstance() {
+        return INSTANCE;
+    }
+
+    private TabReclassifier() {
+
+    }
+
+    /**
+     * Starts matching the history against tabs. Has to be called on the client thread.
+     *
+     * @param classifier Classifier of the new tabs
+     * @param always Tabs every message is in
+     */
+    public void reclassify(TabClassifier classifier, long always) {
+        int id = generation.incrementAndGet();
+        List<ChatMessage> messages = new ArrayList<>(ChatHistory.getInstance().getMessages());
+        if (messages.isEmpty()) {
+            return;
+        }
+        // Fields are parsed on demand, which has to happen here
+        MessageFields[] fields = new MessageFields[messages.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = messages.get(i).getFields();
+        }
+        long[] tabs = new long[messages.size()];
+        POOL.execute(() -> {
+            try {
+                POOL.invoke(new Chunk(id, classifier, messages, fields, tabs, 0, messages.size()));
+            } catch (RuntimeException e) {
+                LogManager.getLogger().error("[AdvancedChat] Couldn't match chat history against tabs", e);
+                return;
+            }
+            if (generation.get() == id) {
+                MinecraftClient.getInstance().execute(() -> publish(id, messages, tabs, always));
+            }
+        });
+    }
+
+    private void publish(int id, List<ChatMessage> messages, long[] tabs, long always) {
+        if (generation.get() != id) {
+            return;
+        }
+        for (int i = 0; i < tabs.length; i++) {
+            messages.get(i).setTabs(tabs[i] | always);
+        }
+        ChatHistory.getInstance().reindex();
+        AdvancedChatHud.getInstance().refresh();
+    }
+
+    private class Chunk extends RecursiveAction {
+
+        private final int id;
+        private final TabClassifier classifier;
+        private final List<ChatMessage> messages;
+        private final MessageFields[] fields;
+        private final long[] tabs;
+        private final int start;
+        private final int end;
+
+        private Chunk(int id, TabClassifier classifier, List<ChatMessage> messages, MessageFields[] fields, long[] tabs, int start, int end) {
+            this.id = id;
+            this.classifier = classifier;
+            this.messages = messages;
+            this.fields = fields;
+            this.tabs = tabs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (generation.get() != id) {
+                return;
+            }
+            if (end - start > CHUNK) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Chunk(id, classifier, messages, fields, tabs, start, middle), new Chunk(id, classifier, messages, fields, tabs, middle, end));
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                tabs[i] = classifier.match(messages.get(i).getOriginalText().getString(), fields[i]);
+            }
+        }
+
+    }
+
+}
@@ -1,38 +1,182 @@
 package io.github.darkkronicle.advancedchat.config;
 
+import io.github.darkkronicle.advancedchat.chat.search.ChatLogIndex;
+import io.github.darkkronicle.advancedchat.chat.search.ChatLogQuery;
+import io.github.darkkronicle.advancedchat.chat.search.TabIndex;
+import io.github.darkkronicle.advancedchat.chat.search.TimeIndex;
+import lombok.AccessLevel;
 import lombok.Data;
 import io.github.darkkronicle.advancedchat.chat.ChatLogMessage;
+import io.github.darkkronicle.advancedchat.chat.ChatMessage;
+import io.github.darkkronicle.advancedchat.chat.tabs.MainChatTab;
+import io.github.darkkronicle.advancedchat.storage.ChatArchive;
 import io.github.darkkronicle.advancedchat.util.FluidText;
+import lombok.Setter;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 @Environment(EnvType.CLIENT)
 @Data
 public class ChatLogData {
+    /**
+     * Newest message first
+     */
+    @Setter(AccessLevel.NONE)
     private ArrayList<ChatLogMessage> messages = new ArrayList<>();
     private boolean chatLogTime = ConfigStorage.ChatLog.SHOW_TIME.config.getBooleanValue();
     private boolean chatHudTime = ConfigStorage.ChatScreen.SHOW_TIME.config.getBooleanValue();
 
+    /**
+     * Word index over the display text of {@link #messages}
+     */
+    @Setter(AccessLevel.NONE)
+    private ChatLogIndex index = new ChatLogIndex();
+
+    /**
+     * Sampled timestamps of {@link #messages}
+     */
+    @Setter(AccessLevel.NONE)
+    private TimeIndex timeIndex = new TimeIndex();
+
+    /**
+     * Sequences of {@link #messages} in each tab
+     */
+    @Setter(AccessLevel.NONE)
+    private TabIndex tabIndex = new TabIndex();
+
+    /**
+     * Sequence of the newest message. The message at position i in {@link #messages} has the
+     * sequence {@code newest - i}.
+     */
+    @Setter(AccessLevel.NONE)
+    private long newest = -1;
+
     public void addMessage(ChatLogMessage message) {
+        ChatArchive.getInstance().append(message);
         boolean showtime = ConfigStorage.ChatLog.SHOW_TIME.config.getBooleanValue();
-        if (showtime) {
-            DateTimeFormatter format = DateTimeFormatter.ofPattern(ConfigStorage.General.TIME_FORMAT.config.getStringValue());
+        DateTimeFormatter format = showtime ? DateTimeFormatter.ofPattern(ConfigStorage.General.TIME_FORMAT.config.getStringValue()) : null;
+        insert(message, format);
+    }
+
+    /**
+     * Puts back messages from a snapshot. They aren't archived again. Does nothing if the log isn't
+     * empty.
+     *
+     * @param restored Messages, newest first
+     */
+    public void restore(List<ChatMessage> restored) {
+        if (!messages.isEmpty()) {
+            return;
+        }
+        boolean showtime = ConfigStorage.ChatLog.SHOW_TIME.config.getBooleanValue();
+        DateTimeFormatter format = showtime ? DateTimeFormatter.ofPattern(ConfigStorage.General.TIME_FORMAT.config.getStringValue()) : null;
+        for (int i = restored.size() - 1; i >= 0; i--) {
+            ChatMessage message = restored.get(i);
+            insert(new ChatLogMessage(message), format);
+        }
+    }
+
+    private void insert(ChatLogMessage message, DateTimeFormatter format) {
+        if (format != null) {
             FluidText split = new FluidText(message.getOriginalText());
             split.addTime(format, message.getTime());
             message.setDisplayText(split, 600);
         }
 
-        messages.add(message);
+        newest++;
+        messages.add(0, message);
+        index.add(newest, message.getDisplayText().getString());
+        timeIndex.add(newest, message.getTimestamp());
+        tabIndex.add(newest, message.getTabs());
 
         int visibleMessagesMaxSize = ConfigStorage.ChatScreen.STORED_LINES.config.getIntegerValue();
         while(this.messages.size() > visibleMessagesMaxSize) {
-            this.messages.remove(this.messages.size() - 1);
+            long sequence = newest - (messages.size() - 1);
+            ChatLogMessage removed = this.messages.remove(this.messages.size() - 1);
+            index.remove(sequence, removed.getDisplayText().getString());
         }
+        timeIndex.removeBefore(newest - (messages.size() - 1));
+        tabIndex.removeBefore(newest - (messages.size() - 1));
 
     }
 
+    /**
+     * Moves messages to the new ids of their tabs after the tabs were loaded again. Messages that
+     * were only in removed tabs end up in the main tab.
+     *
+     * @param remap New id for every old id, or -1 if the tab is gone
+     */
+    public void remapTabs(int[] remap) {
+        tabIndex.clear();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            ChatLogMessage message = messages.get(i);
+            message.setTabs(MainChatTab.remapMask(message.getTabs(), remap));
+            tabIndex.add(newest - i, message.getTabs());
+        }
+    }
+
+    /**
+     * Finds the newest message that is not newer than a time. The time index narrows it down to a
+     * few messages, which are then binary searched.
+     *
+     * @param time Epoch milliseconds
+     * @return Position in {@link #messages}, or the amount of messages if all of them are newer
+     */
+    public int findNotAfter(long time) {
+        long oldest = newest - messages.size() + 1;
+        // Sequences are oldest first, so timestamps only go up with them
+        long low = Math.max(oldest, timeIndex.getFloor(time));
+        long high = Math.min(newest + 1, timeIndex.getCeiling(time));
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (messages.get((int) (newest - mid)).getTimestamp() > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        // low is the oldest message that is newer than the time
+        if (low - 1 < oldest) {
+            return messages.size();
+        }
+        return (int) (newest - (low - 1));
+    }
+
+    /**
+     * Narrows down which messages could match a search by looking up the tabs and every piece of
+     * literal text the query requires in the indexes.
+     *
+     * @param query Parsed search
+     * @return Bits set for the positions in {@link #messages} that have to be checked, or null if every
+     * message has to be checked
+     */
+    public BitSet getCandidates(ChatLogQuery query) {
+        BitSet result = null;
+        for (long tabs : query.getTabMasks()) {
+            BitSet candidates = tabIndex.getPositions(tabs, newest, messages.size());
+            if (result == null) {
+                result = candidates;
+            } else {
+                result.and(candidates);
+            }
+        }
+        for (String literal : query.getLiterals()) {
+            BitSet candidates = index.getCandidates(literal, newest, messages.size());
+            if (candidates == null) {
+                continue;
+            }
+            if (result == null) {
+                result = candidates;
+            } else {
+                result.and(candidates);
+            }
+        }
+        return result;
+    }
 
 }
@@ -37,6 +37,9 @@ public class ChatTab {
     private ConfigStorage.SaveableConfig<ConfigOptionList> findType = ConfigStorage.SaveableConfig.fromConfig("findType",
             new ConfigOptionList(translate("findtype"), Filter.FindType.LITERAL, translate("info.findtype")));
 
+    private ConfigStorage.SaveableConfig<ConfigOptionList> field = ConfigStorage.SaveableConfig.fromConfig("field",
+            new ConfigOptionList(translate("field"), Filter.MessageField.FULL, translate("info.field")));
+
     private ConfigStorage.SaveableConfig<ConfigString> startingMessage = ConfigStorage.SaveableConfig.fromConfig("startingMessage",
             new ConfigString(translate("startingmessage"), "", translate("info.startingmessage")));
 
@@ -62,6 +65,7 @@ public class ChatTab {
             name,
             findString,
             findType,
+            field,
             startingMessage,
             forward,
             abbreviation,
@@ -75,6 +79,10 @@ public class ChatTab {
         return Filter.FindType.fromFindType(findType.config.getStringValue());
     }
 
+    public Filter.MessageField getMessageField() {
+        return Filter.MessageField.fromMessageField(field.config.getStringValue());
+    }
+
     public List<String> getWidgetHoverLines() {
         String translated = StringUtils.translate("advancedchat.config.filterdescription");
         ArrayList<String> hover = new ArrayList<>();
@@ -15,6 +15,7 @@ import fi.dy.masa.malilib.config.options.ConfigDouble;
 import fi.dy.masa.malilib.config.options.ConfigInteger;
 import fi.dy.masa.malilib.config.options.ConfigOptionList;
 import fi.dy.masa.malilib.config.options.ConfigString;
+import fi.dy.masa.malilib.config.options.ConfigStringList;
 import fi.dy.masa.malilib.util.FileUtils;
 import fi.dy.masa.malilib.util.JsonUtils;
 import fi.dy.masa.malilib.util.StringUtils;
@@ -22,6 +23,7 @@ import io.github.darkkronicle.advancedchat.chat.registry.AbstractRegistry;
 import io.github.darkkronicle.advancedchat.chat.registry.ChatFormatterRegistry;
 import io.github.darkkronicle.advancedchat.chat.registry.ChatSuggestorRegistry;
 import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
+import io.github.darkkronicle.advancedchat.gui.RenderSettings;
 import io.github.darkkronicle.advancedchat.interfaces.ConfigRegistryOption;
 import io.github.darkkronicle.advancedchat.util.EasingMethod;
 import io.github.darkkronicle.advancedchat.AdvancedChat;
@@ -103,6 +105,17 @@ public class ConfigStorage implements IConfigHandler {
         public final static SaveableConfig<ConfigString> MESSAGE_OWNER_REGEX = SaveableConfig.fromConfig("messageOwnerRegex",
                 new ConfigString(translate("messageownerregex"), "[A-Za-z0-9_§]{3,16}", translate("info.messageownerregex")));
 
+        public final static SaveableConfig<ConfigStringList> MESSAGE_TEMPLATES = SaveableConfig.fromConfig("messageTemplates",
+                new ConfigStringList(translate("messagetemplates"), ImmutableList.of(
+                        "<{author}> {body}",
+                        "[{rank}] {author}: {body}",
+                        "[{channel}] [{rank}] {author}: {body}",
+                        "{rank} {author}: {body}",
+                        "{author}: {body}",
+                        "{author} » {body}",
+                        "[{rank}] {author} » {body}"
+                ), translate("info.messagetemplates")));
+
 
         public final static ImmutableList<SaveableConfig<? extends IConfigBase>> OPTIONS = ImmutableList.of(
                 TIME_FORMAT,
@@ -111,7 +124,8 @@ public class ConfigStorage implements IConfigHandler {
                 CLEAR_ON_DISCONNECT,
                 CHAT_STACK,
                 CHAT_HEADS,
-                MESSAGE_OWNER_REGEX
+                MESSAGE_OWNER_REGEX,
+                MESSAGE_TEMPLATES
         );
 
     }
@@ -174,6 +188,8 @@ public class ConfigStorage implements IConfigHandler {
                 new ConfigBoolean(translate("moretext"), false, translate("info.moretext")));
         public final static SaveableConfig<ConfigBoolean> SEND_TO_CURRENT_TAB = SaveableConfig.fromConfig("sendToCurrentTab",
                 new ConfigBoolean(translate("sendtocurrenttab"), false, translate("info.sendtocurrenttab")));
+        public final static SaveableConfig<ConfigBoolean> CACHE_RENDER = SaveableConfig.fromConfig("cacheRender",
+                new ConfigBoolean(translate("cacherender"), false, translate("info.cacherender")));
 
         public final static ImmutableList<SaveableConfig<? extends IConfigBase>> OPTIONS = ImmutableList.of(
                 WIDTH,
@@ -200,7 +216,8 @@ public class ConfigStorage implements IConfigHandler {
                 STORED_LINES,
                 PERSISTENT_TEXT,
                 MORE_TEXT,
-                SEND_TO_CURRENT_TAB
+                SEND_TO_CURRENT_TAB,
+                CACHE_RENDER
         );
     }
 
@@ -216,10 +233,16 @@ public class ConfigStorage implements IConfigHandler {
                 new ConfigInteger(translate("storedlines"), 1000, 20, 5000, translate("info.storedlines")));
         public final static SaveableConfig<ConfigBoolean> SHOW_TIME = SaveableConfig.fromConfig("showtime",
                 new ConfigBoolean(translate("showtime"), false, translate("info.showtime")));
+        public final static SaveableConfig<ConfigBoolean> ARCHIVE = SaveableConfig.fromConfig("archive",
+                new ConfigBoolean(translate("archive"), false, translate("info.archive")));
+        public final static SaveableConfig<ConfigBoolean> RESTORE = SaveableConfig.fromConfig("restore",
+                new ConfigBoolean(translate("restore"), false, translate("info.restore")));
 
         public final static ImmutableList<SaveableConfig<? extends IConfigBase>> OPTIONS = ImmutableList.of(
                 STORED_LINES,
-                SHOW_TIME
+                SHOW_TIME,
+                ARCHIVE,
+                RESTORE
         );
 
     }
@@ -365,6 +388,7 @@ public class ConfigStorage implements IConfigHandler {
 
            }
         }
+        RenderSettings.refresh();
         AdvancedChat.chatTab.setUpTabs();
         ChatDispatcher.getInstance().loadFilters();
         AdvancedChatHud.getInstance().reset();
@@ -423,6 +447,7 @@ public class ConfigStorage implements IConfigHandler {
 
             writeJsonToFile(root, new File(dir, CONFIG_FILE_NAME));
         }
+        RenderSettings.refresh();
     }
 
     public static void readOptions(JsonObject root, String category, List<SaveableConfig<?>> options) {
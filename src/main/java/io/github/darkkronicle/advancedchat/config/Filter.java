@@ -13,6 +13,9 @@ import fi.dy.masa.malilib.config.options.ConfigOptionList;
 import fi.dy.masa.malilib.config.options.ConfigString;
 import fi.dy.masa.malilib.util.StringUtils;
 import io.github.darkkronicle.advancedchat.AdvancedChat;
+import io.github.darkkronicle.advancedchat.chat.ChatDispatcher;
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import io.github.darkkronicle.advancedchat.filters.conditions.ConditionParser;
 import io.github.darkkronicle.advancedchat.interfaces.ConfigRegistryOption;
 import io.github.darkkronicle.advancedchat.interfaces.IMatchReplace;
 import lombok.Data;
@@ -80,6 +83,17 @@ public class Filter implements Comparable<Filter> {
         return FindType.fromFindType(findType.config.getStringValue());
     }
 
+    /**
+     * Part of the message findString is matched against. Anything but FULL needs a message template to
+     * find that part of the message.
+     */
+    private ConfigStorage.SaveableConfig<ConfigOptionList> field = ConfigStorage.SaveableConfig.fromConfig("field",
+            new ConfigOptionList(translate("field"), MessageField.FULL, translate("info.field")));
+
+    public MessageField getMessageField() {
+        return MessageField.fromMessageField(field.config.getStringValue());
+    }
+
     /**
      * How the found string is modified.
      * ONLYMATCH replaces only what was matched.
@@ -112,6 +126,12 @@ public class Filter implements Comparable<Filter> {
 
     private ArrayList<Filter> children = new ArrayList<>();
 
+    /**
+     * Condition the message has to meet before anything else is checked, see
+     * {@link ConditionParser}. Only set in the JSON, null if there is none.
+     */
+    private JsonElement condition = null;
+
     private MatchProcessorRegistry processors = MatchProcessorRegistry.getInstance().clone();
 
     private final ImmutableList<ConfigStorage.SaveableConfig<?>> options = ImmutableList.of(
@@ -119,6 +139,7 @@ public class Filter implements Comparable<Filter> {
             active,
             findString,
             findType,
+            field,
             replaceType,
             replaceTo,
             replaceTextColor,
@@ -136,6 +157,8 @@ public class Filter implements Comparable<Filter> {
                     .replaceAll(Pattern.quote("<find>"), Matcher.quoteReplacement(findString.config.getStringValue()))
                     .replaceAll(Pattern.quote("<findtype>"), Matcher.quoteReplacement(getFind().getDisplayName())));
         }
+        // Order the condition is checked in right now, with how often each part decided it
+        ChatDispatcher.getInstance().getCondition(this).ifPresent(c -> hover.add(StringUtils.translate("advancedchat.config.filter.conditionorder", c.describe())));
         return hover;
     }
 
@@ -166,6 +189,11 @@ public class Filter implements Comparable<Filter> {
                 }
             }
 
+            JsonElement condition = obj.get("condition");
+            if (condition != null && !condition.isJsonNull()) {
+                f.setCondition(condition);
+            }
+
             JsonElement children = obj.get("children");
             if (children != null && children.isJsonArray()) {
                 ArrayList<Filter> child = new ArrayList<>();
@@ -197,6 +225,9 @@ public class Filter implements Comparable<Filter> {
                 children.add(save(c));
             }
             obj.add("children", children);
+            if (filter.getCondition() != null) {
+                obj.add("condition", filter.getCondition());
+            }
             obj.addProperty("order", filter.getOrder());
             return obj;
         }
@@ -265,6 +296,107 @@ public class Filter implements Comparable<Filter> {
         }
     }
 
+    public enum MessageField implements IConfigOptionListEntry {
+        FULL("full"),
+        AUTHOR("author"),
+        RANK("rank"),
+        CHANNEL("channel"),
+        BODY("body")
+        ;
+        public final String configString;
+
+        private static String translate(String key) {
+            return StringUtils.translate("advancedchat.config.messagefield." + key);
+        }
+
+        MessageField(String configString) {
+            this.configString = configString;
+        }
+
+        /**
+         * Gets this part of a message
+         *
+         * @param text Full message
+         * @param fields Fields of the message
+         * @return The part or null if the message doesn't have it
+         */
+        public String getValue(String text, MessageFields fields) {
+            switch (this) {
+                case AUTHOR:
+                    return fields.getAuthor();
+                case RANK:
+                    return fields.getRank();
+                case CHANNEL:
+                    return fields.getChannel();
+                case BODY:
+                    return fields.getBody();
+                default:
+                    return text;
+            }
+        }
+
+        /**
+         * Gets where this part starts in the message without color codes
+         *
+         * @param fields Fields of the message
+         * @return Index or -1 if the message doesn't have the part
+         */
+        public int getStart(MessageFields fields) {
+            switch (this) {
+                case AUTHOR:
+                    return fields.getAuthorStart();
+                case RANK:
+                    return fields.getRankStart();
+                case CHANNEL:
+                    return fields.getChannelStart();
+                case BODY:
+                    return fields.getBodyStart();
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public String getStringValue() {
+            return configString;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return translate(configString);
+        }
+
+        @Override
+        public IConfigOptionListEntry cycle(boolean forward) {
+            int id = this.ordinal();
+            if (forward) {
+                id++;
+            } else {
+                id--;
+            }
+            if (id >= values().length) {
+                id = 0;
+            } else if (id < 0) {
+                id = values().length - 1;
+            }
+            return values()[id % values().length];
+        }
+
+        @Override
+        public IConfigOptionListEntry fromString(String value) {
+            return fromMessageField(value);
+        }
+
+        public static MessageField fromMessageField(String field) {
+            for (MessageField r : MessageField.values()) {
+                if (r.configString.equals(field)) {
+                    return r;
+                }
+            }
+            return MessageField.FULL;
+        }
+    }
+
     public enum NotifySound implements IConfigOptionListEntry {
         NONE("none", null),
         ARROW_HIT_PLAYER("arrow_hit_player", SoundEvents.ENTITY_ARROW_HIT_PLAYER),
@@ -139,6 +139,12 @@ public class GuiFilterEditor extends GuiBase {
         this.addButton(findType, null);
         y += findType.getHeight() + 2;
 
+        // Message part
+        y += this.addLabel(x, y, filter.getField().config) + 1;
+        ConfigButtonOptionList field = new ConfigButtonOptionList(x, y, getWidth() / 2 - 1, 20, filter.getField().config);
+        this.addButton(field, null);
+        y += field.getHeight() + 2;
+
         // Replace
         this.addLabel(x + getWidth() / 2, y, filter.getReplaceType().config);
         y += this.addLabel(x, y, filter.getReplaceTo().config) + 1;
@@ -7,6 +7,8 @@ import fi.dy.masa.malilib.gui.button.ButtonGeneric;
 import fi.dy.masa.malilib.gui.button.IButtonActionListener;
 import fi.dy.masa.malilib.gui.interfaces.ISelectionListener;
 import fi.dy.masa.malilib.util.StringUtils;
+import io.github.darkkronicle.advancedchat.chat.ChatDispatcher;
+import io.github.darkkronicle.advancedchat.chat.FilterReprocessor;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.config.Filter;
 import io.github.darkkronicle.advancedchat.gui.SharingScreen;
@@ -61,7 +63,8 @@ public class GuiFilterManager extends GuiListBase<Filter, WidgetFilterEntry, Wid
         y += 24;
         x = this.width - 10;
         x -= this.addButton(x, y, ButtonListener.Type.ADD_FILTER) + 2;
-        this.addButton(x, y, ButtonListener.Type.IMPORT);
+        x -= this.addButton(x, y, ButtonListener.Type.IMPORT) + 2;
+        this.addButton(x, y, ButtonListener.Type.REAPPLY);
     }
 
     protected int addButton(int x, int y, ButtonListener.Type type) {
@@ -97,12 +100,16 @@ public class GuiFilterManager extends GuiListBase<Filter, WidgetFilterEntry, Wid
                 this.gui.getListWidget().refreshEntries();
             } else if (this.type == Type.IMPORT) {
                 GuiBase.openGui(new SharingScreen(null, gui));
+            } else if (this.type == Type.REAPPLY) {
+                ChatDispatcher.getInstance().loadFilters();
+                FilterReprocessor.getInstance().start();
             }
         }
 
         public enum Type {
             ADD_FILTER("addfilter"),
-            IMPORT("import")
+            IMPORT("import"),
+            REAPPLY("reapply")
             ;
 
             private static String translate(String key) {
@@ -2,11 +2,14 @@ package io.github.darkkronicle.advancedchat.config.gui;
 
 import fi.dy.masa.malilib.gui.GuiBase;
 import fi.dy.masa.malilib.gui.GuiListBase;
+import fi.dy.masa.malilib.gui.Message;
 import fi.dy.masa.malilib.gui.button.ButtonBase;
 import fi.dy.masa.malilib.gui.button.ButtonGeneric;
 import fi.dy.masa.malilib.gui.button.IButtonActionListener;
 import fi.dy.masa.malilib.gui.interfaces.ISelectionListener;
 import fi.dy.masa.malilib.util.StringUtils;
+import io.github.darkkronicle.advancedchat.AdvancedChat;
+import io.github.darkkronicle.advancedchat.chat.tabs.TabClassifier;
 import io.github.darkkronicle.advancedchat.config.ChatTab;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.gui.SharingScreen;
@@ -60,6 +63,11 @@ public class GuiTabManager extends GuiListBase<ChatTab, WidgetTabEntry, WidgetLi
         x = this.width - 10;
         x -= this.addButton(x, y, ButtonListener.Type.ADD_TAB) + 2;
         x -= this.addButton(x, y, ButtonListener.Type.IMPORT) + 2;
+
+        int unloaded = AdvancedChat.chatTab.getUnloadedTabs();
+        if (unloaded > 0) {
+            this.addGuiMessage(Message.MessageType.WARNING, 10000, StringUtils.translate("advancedchat.gui.message.tabsnotloaded", unloaded, TabClassifier.MAX_TABS));
+        }
     }
 
     protected int addButton(int x, int y, ButtonListener.Type type) {
@@ -90,6 +98,10 @@ public class GuiTabManager extends GuiListBase<ChatTab, WidgetTabEntry, WidgetLi
         @Override
         public void actionPerformedWithButton(ButtonBase button, int mouseButton) {
             if (this.type == ButtonListener.Type.ADD_TAB) {
+                if (ConfigStorage.TABS.size() >= TabClassifier.MAX_TABS) {
+                    this.gui.addGuiMessage(Message.MessageType.ERROR, 5000, StringUtils.translate("advancedchat.gui.message.toomanytabs", TabClassifier.MAX_TABS));
+                    return;
+                }
                 ConfigStorage.TABS.add(new ChatTab());
                 this.gui.getListWidget().refreshEntries();
             } else if (this.type == Type.IMPORT) {
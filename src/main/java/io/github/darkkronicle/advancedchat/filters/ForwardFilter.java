@@ -12,6 +12,7 @@ import io.github.darkkronicle.advancedchat.util.SearchResult;
 import io.github.darkkronicle.advancedchat.util.SearchUtils;
 import io.github.darkkronicle.advancedchat.interfaces.IMessageProcessor;
 import io.github.darkkronicle.advancedchat.util.StringMatch;
+import lombok.Setter;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
@@ -25,12 +26,21 @@ public class ForwardFilter implements IFilter {
 
     private final MatchProcessorRegistry registry;
 
+    /**
+     * While set no processors run, for when filters are run over messages that were already processed
+     */
+    @Setter
+    private static boolean suppressed = false;
+
     public ForwardFilter(MatchProcessorRegistry registry) {
         this.registry = registry;
     }
 
     @Override
     public Optional<FluidText> filter(ParentFilter filter, FluidText text, FluidText unfiltered,SearchResult search) {
+        if (suppressed) {
+            return Optional.empty();
+        }
         IMatchProcessor.Result result = null;
         for (MatchProcessorRegistry.MatchProcessorOption p : registry.getAll()) {
             if (!p.isActive()) {
@@ -1,12 +1,16 @@
 package io.github.darkkronicle.advancedchat.filters;
 
 import io.github.darkkronicle.advancedchat.chat.ChatDispatcher;
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
 import io.github.darkkronicle.advancedchat.config.Filter;
+import io.github.darkkronicle.advancedchat.filters.conditions.FilterCondition;
 import io.github.darkkronicle.advancedchat.interfaces.IFilter;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
 import io.github.darkkronicle.advancedchat.util.FluidText;
 import io.github.darkkronicle.advancedchat.util.SearchResult;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.Value;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
@@ -31,12 +35,25 @@ public class ParentFilter {
     private List<ForwardFilter> forwardFilters;
     private final Filter.FindType findType;
     private final String findString;
+    private final Filter.MessageField field;
+
+    /**
+     * Checked before searching, null if the filter has none
+     */
+    @Getter
+    @Setter
+    private FilterCondition condition = null;
 
     public ParentFilter(Filter.FindType findType, String findString) {
+        this(findType, findString, Filter.MessageField.FULL);
+    }
+
+    public ParentFilter(Filter.FindType findType, String findString, Filter.MessageField field) {
         filters = new ArrayList<>();
         forwardFilters = new ArrayList<>();
         this.findString = findString;
         this.findType = findType;
+        this.field = field;
     }
 
     public List<IFilter> getFilters() {
@@ -54,8 +71,20 @@ public class ParentFilter {
     }
 
     public FilterResult filter(FluidText text, FluidText unfiltered) {
-        SearchResult search = SearchResult.searchOf(text.getString(), findString, findType);
-        if (search.size() == 0) {
+        return filter(text, unfiltered, MessageFields.NONE);
+    }
+
+    /**
+     * Filters text
+     *
+     * @param fields Fields of the message, used when the filter only looks at one part of it
+     */
+    public FilterResult filter(FluidText text, FluidText unfiltered, MessageFields fields) {
+        if (condition != null && !condition.test(text.getString(), fields)) {
+            return FilterResult.EMPTY;
+        }
+        SearchResult search = search(text.getString(), fields);
+        if (search == null || search.size() == 0) {
             return FilterResult.EMPTY;
         }
         ColorUtil.SimpleColor color = null;
@@ -81,4 +110,25 @@ public class ParentFilter {
         return new FilterResult(Optional.of(text), Optional.ofNullable(color));
     }
 
+    private SearchResult search(String text, MessageFields fields) {
+        if (field == Filter.MessageField.FULL) {
+            return SearchResult.searchOf(text, findString, findType);
+        }
+        String value = field.getValue(text, fields);
+        if (value == null) {
+            return null;
+        }
+        // Matches have to be where the part is in the text so they can be replaced. The start is in the
+        // text without color codes and earlier filters could have changed the text, so it's checked.
+        int start = field.getStart(fields);
+        if (start < 0 || !text.startsWith(value, start)) {
+            // Only taken from somewhere else if there's no doubt which one it is
+            start = text.indexOf(value);
+            if (start < 0 || text.indexOf(value, start + 1) >= 0) {
+                return null;
+            }
+        }
+        return SearchResult.searchOf(text, start, start + value.length(), findString, findType);
+    }
+
 }
@@ -0,0 +1,129 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import io.github.darkkronicle.advancedchat.config.Filter;
+import lombok.experimental.UtilityClass;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the "condition" of a filter. Every node is an object with one of these keys:
+ * <ul>
+ *     <li>{@code "and": [...]} all of the conditions</li>
+ *     <li>{@code "or": [...]} any of the conditions</li>
+ *     <li>{@code "not": {...}} the condition isn't met</li>
+ *     <li>{@code "find": "text"} the text is found, with an optional {@code "type"} (a find type, literal by
+ *     default) and {@code "field"} (a message part, full by default)</li>
+ *     <li>{@code "in": ["a", "b"]} a message part is exactly one of the values, with an optional
+ *     {@code "field"} (author by default)</li>
+ * </ul>
+ * For example {@code {"and": [{"find": "A"}, {"not": {"find": "B"}}, {"field": "author", "in": ["C"]}]}}.
+ */
+@Environment(EnvType.CLIENT)
+@UtilityClass
+public class ConditionParser {
+
+    /**
+     * @throws IllegalArgumentException If the condition isn't valid
+     */
+    public FilterCondition parse(JsonElement element) {
+        if (element == null || !element.isJsonObject()) {
+            throw new IllegalArgumentException("Condition has to be an object: " + element);
+        }
+        JsonObject obj = element.getAsJsonObject();
+        if (obj.has("and")) {
+            return new GroupCondition(parseAll(obj.get("and")), true);
+        }
+        if (obj.has("or")) {
+            return new GroupCondition(parseAll(obj.get("or")), false);
+        }
+        if (obj.has("not")) {
+            return new NotCondition(parse(obj.get("not")));
+        }
+        if (obj.has("find")) {
+            Filter.FindType type = getType(obj);
+            try {
+                return new MatchCondition(getField(obj, Filter.MessageField.FULL), type, getString(obj, "find"));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex in condition: " + e.getMessage(), e);
+            }
+        }
+        if (obj.has("in")) {
+            JsonElement in = obj.get("in");
+            if (!in.isJsonArray()) {
+                throw new IllegalArgumentException("\"in\" has to be a list: " + in);
+            }
+            Set<String> values = new HashSet<>();
+            for (JsonElement value : in.getAsJsonArray()) {
+                if (!value.isJsonPrimitive()) {
+                    throw new IllegalArgumentException("\"in\" can only have strings: " + in);
+                }
+                values.add(value.getAsString());
+            }
+            return new InCondition(getField(obj, Filter.MessageField.AUTHOR), values);
+        }
+        throw new IllegalArgumentException("Unknown condition: " + obj);
+    }
+
+    private List<FilterCondition> parseAll(JsonElement element) {
+        if (!element.isJsonArray()) {
+            throw new IllegalArgumentException("Expected a list of conditions: " + element);
+        }
+        JsonArray array = element.getAsJsonArray();
+        List<FilterCondition> conditions = new ArrayList<>(array.size());
+        for (JsonElement child : array) {
+            conditions.add(parse(child));
+        }
+        return conditions;
+    }
+
+    /**
+     * Unlike {@link Filter.FindType#fromFindType(String)} a misspelled type isn't read as literal
+     */
+    private Filter.FindType getType(JsonObject obj) {
+        if (!obj.has("type")) {
+            return Filter.FindType.LITERAL;
+        }
+        String value = getString(obj, "type");
+        for (Filter.FindType type : Filter.FindType.values()) {
+            if (type.configString.equals(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown type: " + value);
+    }
+
+    /**
+     * Unlike {@link Filter.MessageField#fromMessageField(String)} a misspelled field isn't read as the
+     * full message
+     */
+    private Filter.MessageField getField(JsonObject obj, Filter.MessageField fallback) {
+        if (!obj.has("field")) {
+            return fallback;
+        }
+        String value = getString(obj, "field");
+        for (Filter.MessageField field : Filter.MessageField.values()) {
+            if (field.configString.equals(value)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field: " + value);
+    }
+
+    private String getString(JsonObject obj, String key) {
+        JsonElement element = obj.get(key);
+        if (!element.isJsonPrimitive()) {
+            throw new IllegalArgumentException("\"" + key + "\" has to be a string: " + element);
+        }
+        return element.getAsString();
+    }
+
+}
@@ -0,0 +1,33 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+/**
+ * Compiled condition a message has to meet before a filter runs. See {@link ConditionParser} for how
+ * they are written.
+ */
+@Environment(EnvType.CLIENT)
+public interface FilterCondition {
+
+    /**
+     * Checks a message
+     *
+     * @param text Message
+     * @param fields Fields of the message
+     * @return If the message meets the condition
+     */
+    boolean test(String text, MessageFields fields);
+
+    /**
+     * Rough cost of {@link #test(String, MessageFields)}, used to check cheap conditions first
+     */
+    int getCost();
+
+    /**
+     * Short description of the condition in the order it's currently checked in
+     */
+    String describe();
+
+}
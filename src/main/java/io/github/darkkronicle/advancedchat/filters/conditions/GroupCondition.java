@@ -0,0 +1,170 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Condition that needs all or any of its conditions. Checking stops as soon as the result is known.
+ *
+ * The conditions start out cheapest first. After that the group keeps track of how long each one
+ * takes and how often it decides the result, and every so often puts the ones that decide the most
+ * for the least time first. Conditions don't have side effects, so the order never changes the result.
+ */
+@Environment(EnvType.CLIENT)
+public class GroupCondition implements FilterCondition {
+
+    /**
+     * Tests between reordering
+     */
+    private static final int REORDER = 128;
+
+    /**
+     * One in this many tests gets timed, timing every one would cost more than cheap conditions do
+     */
+    private static final int SAMPLE = 16;
+
+    /**
+     * Rough nanoseconds per point of {@link FilterCondition#getCost()}, for conditions that weren't timed yet
+     */
+    private static final int COST_NANOS = 25;
+
+    /**
+     * Counts are halved once a condition was tested this often, so the order follows newer messages
+     */
+    private static final int DECAY = 1 << 16;
+
+    private final FilterCondition[] conditions;
+    private final int[] tests;
+    private final int[] decided;
+    private final long[] nanos;
+    private final int[] timed;
+    private final boolean all;
+    private final int cost;
+    private int evaluations = 0;
+
+    /**
+     * @param conditions Conditions in any order
+     * @param all True if all of them have to be met, false if any of them is enough
+     */
+    public GroupCondition(List<FilterCondition> conditions, boolean all) {
+        List<FilterCondition> sorted = new ArrayList<>(conditions);
+        // Stable, so equal costs keep the order they were written in
+        sorted.sort(Comparator.comparingInt(FilterCondition::getCost));
+        this.conditions = sorted.toArray(new FilterCondition[0]);
+        this.tests = new int[this.conditions.length];
+        this.decided = new int[this.conditions.length];
+        this.nanos = new long[this.conditions.length];
+        this.timed = new int[this.conditions.length];
+        this.all = all;
+        int total = 0;
+        for (FilterCondition condition : this.conditions) {
+            total += condition.getCost();
+        }
+        this.cost = total;
+    }
+
+    @Override
+    public boolean test(String text, MessageFields fields) {
+        boolean time = evaluations++ % SAMPLE == 0;
+        boolean result = all;
+        for (int i = 0; i < conditions.length; i++) {
+            boolean value;
+            if (time) {
+                long start = System.nanoTime();
+                value = conditions[i].test(text, fields);
+                nanos[i] += System.nanoTime() - start;
+                timed[i]++;
+            } else {
+                value = conditions[i].test(text, fields);
+            }
+            tests[i]++;
+            if (value != all) {
+                decided[i]++;
+                result = !all;
+                break;
+            }
+        }
+        if (evaluations % REORDER == 0) {
+            reorder();
+        }
+        return result;
+    }
+
+    /**
+     * Expected time spent per time the condition decides the result. Lower goes first.
+     */
+    private double getRank(int index) {
+        double time = timed[index] > 0 ? (double) nanos[index] / timed[index] : conditions[index].getCost() * COST_NANOS;
+        // Smoothed so conditions that were barely tested aren't written off
+        double chance = (decided[index] + 1d) / (tests[index] + 2d);
+        return time / chance;
+    }
+
+    private void reorder() {
+        double[] ranks = new double[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            ranks[i] = getRank(i);
+        }
+        // Insertion sort, groups are small and usually already in order
+        for (int i = 1; i < conditions.length; i++) {
+            for (int j = i; j > 0 && ranks[j] < ranks[j - 1]; j--) {
+                swap(ranks, j);
+            }
+        }
+        for (int i = 0; i < conditions.length; i++) {
+            if (tests[i] >= DECAY) {
+                tests[i] >>= 1;
+                decided[i] >>= 1;
+                nanos[i] >>= 1;
+                timed[i] >>= 1;
+            }
+        }
+    }
+
+    private void swap(double[] ranks, int j) {
+        double rank = ranks[j];
+        ranks[j] = ranks[j - 1];
+        ranks[j - 1] = rank;
+        FilterCondition condition = conditions[j];
+        conditions[j] = conditions[j - 1];
+        conditions[j - 1] = condition;
+        int test = tests[j];
+        tests[j] = tests[j - 1];
+        tests[j - 1] = test;
+        int decide = decided[j];
+        decided[j] = decided[j - 1];
+        decided[j - 1] = decide;
+        long nano = nanos[j];
+        nanos[j] = nanos[j - 1];
+        nanos[j - 1] = nano;
+        int time = timed[j];
+        timed[j] = timed[j - 1];
+        timed[j - 1] = time;
+    }
+
+    @Override
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String describe() {
+        StringBuilder builder = new StringBuilder(all ? "and(" : "or(");
+        for (int i = 0; i < conditions.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(conditions[i].describe());
+            if (tests[i] > 0) {
+                builder.append(" [").append(decided[i] * 100 / tests[i]).append("%]");
+            }
+        }
+        return builder.append(')').toString();
+    }
+
+}
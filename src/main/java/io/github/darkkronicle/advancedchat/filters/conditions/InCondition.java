@@ -0,0 +1,41 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import io.github.darkkronicle.advancedchat.config.Filter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Condition that a part of the message is exactly one of a set of values, like an author in a list
+ */
+@Environment(EnvType.CLIENT)
+public class InCondition implements FilterCondition {
+
+    private final Filter.MessageField field;
+    private final Set<String> values;
+
+    public InCondition(Filter.MessageField field, Set<String> values) {
+        this.field = field;
+        this.values = new HashSet<>(values);
+    }
+
+    @Override
+    public boolean test(String text, MessageFields fields) {
+        String value = field.getValue(text, fields);
+        return value != null && values.contains(value);
+    }
+
+    @Override
+    public int getCost() {
+        return 1;
+    }
+
+    @Override
+    public String describe() {
+        return field.getStringValue() + " in " + values;
+    }
+
+}
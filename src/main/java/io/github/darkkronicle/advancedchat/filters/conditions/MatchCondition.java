@@ -0,0 +1,93 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import io.github.darkkronicle.advancedchat.config.Filter;
+import io.github.darkkronicle.advancedchat.util.SearchUtils;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.util.regex.Pattern;
+
+/**
+ * Condition that the find string is found in a part of the message
+ */
+@Environment(EnvType.CLIENT)
+public class MatchCondition implements FilterCondition {
+
+    private final Filter.MessageField field;
+    private final Filter.FindType type;
+    private final String find;
+
+    /**
+     * Compiled for everything but literal matches, which use {@link String#contains(CharSequence)}
+     */
+    private final Pattern pattern;
+
+    /**
+     * Text every regex match contains, checked before running the regex
+     */
+    private final String required;
+
+    private final int cost;
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException If the regex is invalid
+     */
+    public MatchCondition(Filter.MessageField field, Filter.FindType type, String find) {
+        this.field = field;
+        this.type = type;
+        this.find = find;
+        this.pattern = type == Filter.FindType.UPPERLOWER || type == Filter.FindType.REGEX ? SearchUtils.compilePattern(find, type) : null;
+        this.required = type == Filter.FindType.REGEX ? SearchUtils.getRequiredLiteral(find) : null;
+        this.cost = getCost(field, type);
+    }
+
+    private static int getCost(Filter.MessageField field, Filter.FindType type) {
+        int cost;
+        switch (type) {
+            case ALL:
+                return 0;
+            case LITERAL:
+                cost = 2;
+                break;
+            case UPPERLOWER:
+                cost = 4;
+                break;
+            default:
+                cost = 16;
+                break;
+        }
+        // Parts of a message are a lot shorter than the whole thing
+        return field == Filter.MessageField.FULL ? cost * 4 : cost;
+    }
+
+    @Override
+    public boolean test(String text, MessageFields fields) {
+        String value = field.getValue(text, fields);
+        if (value == null) {
+            return false;
+        }
+        switch (type) {
+            case ALL:
+                return true;
+            case LITERAL:
+                return value.contains(find);
+            default:
+                if (required != null && !value.contains(required)) {
+                    return false;
+                }
+                return pattern.matcher(value).find();
+        }
+    }
+
+    @Override
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String describe() {
+        return field.getStringValue() + " " + type.getStringValue() + " \"" + find + "\"";
+    }
+
+}
@@ -0,0 +1,29 @@
+package io.github.darkkronicle.advancedchat.filters.conditions;
+
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
+import lombok.AllArgsConstructor;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+@Environment(EnvType.CLIENT)
+@AllArgsConstructor
+public class NotCondition implements FilterCondition {
+
+    private final FilterCondition condition;
+
+    @Override
+    public boolean test(String text, MessageFields fields) {
+        return !condition.test(text, fields);
+    }
+
+    @Override
+    public int getCost() {
+        return condition.getCost();
+    }
+
+    @Override
+    public String describe() {
+        return "not " + condition.describe();
+    }
+
+}
@@ -4,9 +4,11 @@ import io.github.darkkronicle.advancedchat.AdvancedChat;
 import io.github.darkkronicle.advancedchat.chat.ChatHistory;
 import io.github.darkkronicle.advancedchat.chat.ChatLogMessage;
 import io.github.darkkronicle.advancedchat.chat.ChatMessage;
+import io.github.darkkronicle.advancedchat.chat.MessageFields;
 import io.github.darkkronicle.advancedchat.chat.MessageOwner;
+import io.github.darkkronicle.advancedchat.chat.MessageTemplates;
+import io.github.darkkronicle.advancedchat.chat.PlayerListTracker;
 import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
-import io.github.darkkronicle.advancedchat.chat.tabs.CustomChatTab;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
 import io.github.darkkronicle.advancedchat.interfaces.IMatchProcessor;
@@ -17,11 +19,11 @@ import io.github.darkkronicle.advancedchat.util.SearchUtils;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.text.Text;
 
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 
 @Environment(EnvType.CLIENT)
 public class ChatTabProcessor implements IMatchProcessor {
@@ -48,7 +50,14 @@ public class ChatTabProcessor implements IMatchProcessor {
 
         int width = 0;
         // Find player
-        MessageOwner player = SearchUtils.getAuthor(MinecraftClient.getInstance().getNetworkHandler(), unfiltered.getString());
+        ClientPlayNetworkHandler handler = MinecraftClient.getInstance().getNetworkHandler();
+        MessageFields fields = MessageTemplates.getInstance().parse(handler, unfiltered.getString());
+        MessageOwner player;
+        if (fields.getAuthor() != null) {
+            player = new MessageOwner(fields.getAuthor(), PlayerListTracker.getInstance().getPlayer(handler, fields.getAuthor()));
+        } else {
+            player = SearchUtils.getAuthor(handler, unfiltered.getString());
+        }
         ChatMessage line = ChatMessage.builder()
                 .displayText(text)
                 .originalText(original)
@@ -59,44 +68,25 @@ public class ChatTabProcessor implements IMatchProcessor {
                 .time(time)
                 .background(backcolor)
                 .build();
+        line.setUnfilteredText(unfiltered);
+        line.setFields(fields);
         addMessage(line);
         return true;
     }
 
     public void addMessage(ChatMessage line) {
-        boolean forward = true;
-        ArrayList<AbstractChatTab> added = new ArrayList<>();
+        long tabs = 0;
         if (nextSend) {
             nextSend = false;
-            AbstractChatTab defaultTo = AdvancedChatHud.getInstance().getSelected().getTab();
-            if (defaultTo.equals(AdvancedChat.chatTab)) {
-                forward = false;
-            }
-            added.add(defaultTo);
-        }
-        if (AdvancedChat.chatTab.getCustomChatTabs().size() > 0) {
-            for (CustomChatTab tab : AdvancedChat.chatTab.getCustomChatTabs()) {
-                if (!tab.shouldAdd(line.getOriginalText())) {
-                    continue;
-                }
-                if (added.contains(tab)) {
-                    continue;
-                }
-                added.add(tab);
-                if (!tab.isForward()) {
-                    forward = false;
-                    break;
-                }
-            }
-        }
-        if (forward) {
-            added.add(AdvancedChat.chatTab);
+            tabs |= AdvancedChatHud.getInstance().getSelected().getTab().getMask();
         }
-        for (AbstractChatTab tab : added) {
+        // Tabs it was already sent to don't stop it going elsewhere
+        tabs |= AdvancedChat.chatTab.getClassifier().classify(line.getOriginalText().getString(), line.getFields(), tabs);
+        for (AbstractChatTab tab : AdvancedChat.chatTab.getTabs(tabs)) {
             tab.addNewUnread();
         }
-        line.setTabs(added);
-        AdvancedChat.getChatLogData().addMessage(new ChatLogMessage(line, added.toArray(new AbstractChatTab[0])));
+        line.setTabs(tabs);
+        AdvancedChat.getChatLogData().addMessage(new ChatLogMessage(line));
         ChatHistory.getInstance().add(line);
     }
 
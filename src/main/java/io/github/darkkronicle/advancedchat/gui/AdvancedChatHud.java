@@ -30,6 +30,9 @@ public class AdvancedChatHud implements IRenderer {
     }
 
     public void reset() {
+        for (ChatWindow w : windows) {
+            w.close();
+        }
         windows.clear();
         ChatWindow base = new ChatWindow(AdvancedChat.chatTab);
         base.setSelected(true);
@@ -175,6 +178,7 @@ public class AdvancedChatHud implements IRenderer {
 
     public void deleteWindow(ChatWindow chatWindow) {
         windows.remove(chatWindow);
+        chatWindow.close();
         if (!windows.isEmpty()) {
             for (ChatWindow w : windows) {
                 w.setSelected(false);
@@ -183,12 +187,32 @@ public class AdvancedChatHud implements IRenderer {
         }
     }
 
+    /**
+     * Rebuilds every window from the chat history.
+     */
+    public void refresh() {
+        for (ChatWindow w : windows) {
+            w.setTab(w.getTab());
+        }
+    }
+
     public void onNewMessage(ChatMessage message) {
         for (ChatWindow w : windows) {
             w.addMessage(message);
         }
     }
 
+    /**
+     * Redraws windows showing a message that changed, like when it got stacked.
+     */
+    public void onMessageUpdate(ChatMessage message) {
+        for (ChatWindow w : windows) {
+            if (message.isInTab(w.getTab())) {
+                w.markDirty();
+            }
+        }
+    }
+
     public void clear() {
         messageHistory.clear();
     }
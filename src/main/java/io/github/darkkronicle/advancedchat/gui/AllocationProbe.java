@@ -0,0 +1,128 @@
+package io.github.darkkronicle.advancedchat.gui;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import org.apache.logging.log4j.LogManager;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how much drawing the lines of a chat window allocates. Turned on by starting the game with
+ * {@code -Dadvancedchat.allocationProbe=true}, and then every {@link #DRAWS} window draws it logs the
+ * bytes allocated per draw. This includes the vanilla and malilib draw calls, so compare it against the
+ * same chat with the vanilla hud.
+ *
+ * Uses the allocation counter of the HotSpot thread bean. Reading it can allocate on its own, so the
+ * cost of one read is measured up front and taken out of every result. Nothing is set up unless the
+ * probe is turned on, the counter is only switched on by {@link Holder}.
+ */
+@Environment(EnvType.CLIENT)
+public class AllocationProbe {
+
+    public static final boolean ENABLED = Boolean.getBoolean("advancedchat.allocationProbe");
+
+    /**
+     * Window draws skipped before measuring so caches are filled
+     */
+    private static final int WARMUP = 200;
+
+    private static final int DRAWS = 600;
+
+    private final com.sun.management.ThreadMXBean bean;
+
+    /**
+     * Bytes one read of the counter allocates
+     */
+    private long overhead = -1;
+
+    private long thread;
+    private boolean active = false;
+    private long start;
+
+    private int warmup = WARMUP;
+    private int draws = 0;
+    private long lines = 0;
+    private long totalBytes = 0;
+
+    /**
+     * Only loaded once the probe is used, which only happens when it's turned on
+     */
+    private static class Holder {
+
+        private final static AllocationProbe INSTANCE = new AllocationProbe();
+
+    }
+
+    public static AllocationProbe getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private AllocationProbe() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            bean = (com.sun.management.ThreadMXBean) threads;
+            bean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            bean = null;
+            LogManager.getLogger().warn("[AdvancedChat] Allocation probe isn't supported by this JVM");
+        }
+    }
+
+    private long read() {
+        return bean.getThreadAllocatedBytes(thread);
+    }
+
+    private void calibrate() {
+        thread = Thread.currentThread().getId();
+        for (int i = 0; i < 1000; i++) {
+            read();
+        }
+        long first = read();
+        for (int i = 0; i < 1000; i++) {
+            read();
+        }
+        overhead = (read() - first) / 1001;
+    }
+
+    /**
+     * Starts measuring a window draw
+     */
+    public void begin() {
+        if (bean == null) {
+            return;
+        }
+        if (overhead < 0) {
+            calibrate();
+        }
+        active = true;
+        start = read();
+    }
+
+    /**
+     * Ends the window draw
+     *
+     * @param drawn Lines drawn
+     */
+    public void end(int drawn) {
+        if (!active) {
+            return;
+        }
+        active = false;
+        long total = read() - start - overhead;
+        if (warmup > 0) {
+            warmup--;
+            return;
+        }
+        draws++;
+        lines += drawn;
+        totalBytes += total;
+        if (draws >= DRAWS) {
+            LogManager.getLogger().info("[AdvancedChat] Allocation probe: {} window draws, {} lines, {} bytes/draw",
+                    draws, lines, totalBytes / draws);
+            draws = 0;
+            lines = 0;
+            totalBytes = 0;
+        }
+    }
+
+}
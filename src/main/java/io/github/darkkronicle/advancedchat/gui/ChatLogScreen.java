@@ -2,12 +2,21 @@ package io.github.darkkronicle.advancedchat.gui;
 
 import fi.dy.masa.malilib.gui.GuiBase;
 import fi.dy.masa.malilib.util.StringUtils;
-import io.github.darkkronicle.advancedchat.chat.ChatLogMessage;
+import io.github.darkkronicle.advancedchat.chat.search.ChatLogQuery;
+import io.github.darkkronicle.advancedchat.chat.search.ChatLogSearch;
+import io.github.darkkronicle.advancedchat.chat.search.MessageListSource;
+import io.github.darkkronicle.advancedchat.chat.search.SearchSnapshot;
+import io.github.darkkronicle.advancedchat.chat.search.SearchSource;
 import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
+import io.github.darkkronicle.advancedchat.config.ChatLogData;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.config.Filter;
+import io.github.darkkronicle.advancedchat.storage.ArchiveReader;
+import io.github.darkkronicle.advancedchat.storage.ArchiveRecord;
+import io.github.darkkronicle.advancedchat.storage.ChatArchive;
+import io.github.darkkronicle.advancedchat.storage.ChatLogExporter;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
-import io.github.darkkronicle.advancedchat.util.SearchUtils;
+import io.github.darkkronicle.advancedchat.util.FluidText;
 import io.github.darkkronicle.advancedchat.AdvancedChat;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.widget.ButtonWidget;
@@ -16,14 +25,19 @@ import net.minecraft.client.gui.widget.TextFieldWidget;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.text.LiteralText;
 import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
 import net.minecraft.util.math.MathHelper;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
+import java.util.BitSet;
 import java.util.regex.PatternSyntaxException;
-import java.util.stream.Collectors;
 
 public class ChatLogScreen extends GuiBase {
 
@@ -34,12 +48,29 @@ public class ChatLogScreen extends GuiBase {
     private int scrolledLines = 0;
 
     private TextFieldWidget searchBox;
+
+    private TextFieldWidget jumpBox;
     private String searchText;
 
     private CheckboxWidget searchFull;
 
     private Filter.FindType findType = Filter.FindType.LITERAL;
 
+    /**
+     * When not null the log is read from the on disk archive instead of memory.
+     */
+    private ArchiveReader archive = null;
+
+    /**
+     * The last archive that was opened, kept while switched to memory so it can be shown again if
+     * nothing was written since
+     */
+    private ArchiveReader archiveReader = null;
+
+    private final ChatLogSearch search = new ChatLogSearch();
+
+    private ChatLogExporter.Format exportFormat = ChatLogExporter.Format.TEXT;
+
     public ChatLogScreen() {
         this.title = StringUtils.translate("advancedchat.screen.chatlog");
     }
@@ -65,17 +96,20 @@ public class ChatLogScreen extends GuiBase {
             if (tab == null) {
                 tab = tabs.get(0);
                 button.setMessage(new LiteralText(tab.getName()));
+                updateSearch();
                 return;
             }
             int cur = tabs.indexOf(tab) + 1;
             if (cur >= tabs.size()) {
                 tab = null;
                 button.setMessage(new LiteralText("All"));
+                updateSearch();
                 return;
             }
             AbstractChatTab newtab = tabs.get(cur);
             tab = newtab;
             button.setMessage(new LiteralText(tab.getName()));
+            updateSearch();
         });
 
         searchText = "";
@@ -84,17 +118,72 @@ public class ChatLogScreen extends GuiBase {
         searchBox.setMaxLength(256);
         searchBox.setChangedListener(this::onSearchBoxChange);
 
-        searchFull = new CheckboxWidget((client.getWindow().getScaledWidth() / 2) + 120, 30, 20, 20, new LiteralText("Search Full Messages"), true);
+        jumpBox = new TextFieldWidget(client.textRenderer, 10, 35, 90, 20, new LiteralText("Jump to..."));
+        jumpBox.setDrawsBackground(true);
+        jumpBox.setMaxLength(32);
+        jumpBox.setSuggestion("10m, 14:00...");
+        jumpBox.setChangedListener(text -> {
+            // Default text field color
+            jumpBox.setEditableColor(0xE0E0E0);
+            jumpBox.setSuggestion(text.isEmpty() ? "10m, 14:00..." : null);
+        });
+
+        searchFull = new CheckboxWidget((client.getWindow().getScaledWidth() / 2) + 120, 30, 20, 20, new LiteralText("Search Full Messages"), true) {
+            @Override
+            public void onPress() {
+                super.onPress();
+                updateSearch();
+            }
+        };
 
         ButtonWidget findButton = new ButtonWidget((client.getWindow().getScaledWidth() / 2) + 60, 30, 50, 20, new LiteralText(findType.name()), button -> {
             findType = cycleResult(findType);
             button.setMessage(new LiteralText(findType.name()));
+            updateSearch();
+        });
+
+        ButtonWidget archiveButton = new ButtonWidget(10, 10, 60, 20, new LiteralText(archive == null ? "Memory" : "Archive"), button -> {
+            if (archive != null) {
+                search.cancel();
+                archive = null;
+                button.setMessage(new LiteralText("Memory"));
+                updateSearch();
+                return;
+            }
+            try {
+                // Only queued, the reader already handles a segment that's still being written
+                ChatArchive.getInstance().flush();
+                File directory = ChatArchive.getServerDirectory();
+                if (archiveReader == null || !archiveReader.isCurrent(directory)) {
+                    closeArchive();
+                    archiveReader = ArchiveReader.open(directory, ChatLogScreen::formatArchived);
+                }
+                archive = archiveReader;
+                scrolledLines = 0;
+                button.setMessage(new LiteralText("Archive"));
+                updateSearch();
+            } catch (IOException e) {
+                archive = null;
+            }
         });
 
+        ButtonWidget exportButton = new ButtonWidget(75, 10, 50, 20, new LiteralText("Export"), button -> export());
+
+        ButtonWidget formatButton = new ButtonWidget(130, 10, 40, 20, new LiteralText(exportFormat.name()), button -> {
+            ChatLogExporter.Format[] formats = ChatLogExporter.Format.values();
+            exportFormat = formats[(exportFormat.ordinal() + 1) % formats.length];
+            button.setMessage(new LiteralText(exportFormat.name()));
+        });
+
+        addButton(archiveButton);
+        addButton(exportButton);
+        addButton(formatButton);
         addButton(tabButton);
         addButton(searchBox);
+        addButton(jumpBox);
         addButton(searchFull);
         addButton(findButton);
+        updateSearch();
     }
 
     public Filter.FindType cycleResult(Filter.FindType result) {
@@ -115,11 +204,64 @@ public class ChatLogScreen extends GuiBase {
         return set[current+1];
     }
 
+    private static Text formatArchived(ArchiveRecord record) {
+        Text text = record.getText();
+        if (!ConfigStorage.ChatLog.SHOW_TIME.config.getBooleanValue()) {
+            return text;
+        }
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(ConfigStorage.General.TIME_FORMAT.config.getStringValue());
+        FluidText split = new FluidText(text);
+        split.addTime(format, Instant.ofEpochMilli(record.getTimestamp()).atZone(ZoneId.systemDefault()).toLocalTime());
+        return split;
+    }
+
     private void onSearchBoxChange(String s) {
         searchText = s;
+        updateSearch();
+    }
+
+    /**
+     * Starts a new search in the background for the current settings. Nothing is searched if there is
+     * no query and no tab.
+     */
+    private void updateSearch() {
+        scrolledLines = 0;
+        if (!isSearching()) {
+            search.cancel();
+            return;
+        }
+        ChatLogQuery query;
+        try {
+            query = ChatLogQuery.parse(searchText, findType, tab);
+        } catch (PatternSyntaxException e) {
+            search.fail(e.getDescription());
+            return;
+        } catch (IllegalArgumentException e) {
+            search.fail(e.getMessage());
+            return;
+        }
+        SearchSource source;
+        BitSet candidates = null;
+        if (archive != null) {
+            source = archive;
+        } else {
+            ChatLogData data = AdvancedChat.getChatLogData();
+            // Copy so that new messages don't change the list while it's searched
+            source = new MessageListSource(new ArrayList<>(data.getMessages()));
+            candidates = data.getCandidates(query);
+        }
+        search.schedule(source, candidates, query, searchFull.isChecked());
+    }
+
+    private boolean isSearching() {
+        return !searchText.isEmpty() || tab != null;
     }
 
     public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        if ((keyCode == 257 || keyCode == 335) && jumpBox.isFocused()) {
+            jumpTo(jumpBox.getText());
+            return true;
+        }
         if (super.keyPressed(keyCode, scanCode, modifiers)) {
             return true;
         } else if (keyCode == 256) {
@@ -129,52 +271,143 @@ public class ChatLogScreen extends GuiBase {
         return true;
     }
 
+    /**
+     * Exports what is currently shown, oldest first. Waits for a running search to finish.
+     */
+    private void export() {
+        SearchSnapshot snapshot = search.getSnapshot();
+        if (isSearching()) {
+            if (!snapshot.isDone() || snapshot.getSource() == null) {
+                return;
+            }
+            ChatLogExporter.getInstance().export(snapshot.getSource(), snapshot.getMatches(), snapshot.getMatchCount(), exportFormat);
+            return;
+        }
+        // Copy so that new messages don't change the list while it's exported
+        SearchSource source = archive != null ? archive : new MessageListSource(new ArrayList<>(AdvancedChat.getChatLogData().getMessages()));
+        ChatLogExporter.getInstance().export(source, null, source.size(), exportFormat);
+    }
+
+    /**
+     * Scrolls so that the newest line at or before a time is at the bottom.
+     *
+     * @param value Anything {@link ChatLogQuery#parseTime(String)} understands
+     */
+    private void jumpTo(String value) {
+        long time;
+        try {
+            time = ChatLogQuery.parseTime(value);
+        } catch (IllegalArgumentException e) {
+            jumpBox.setEditableColor(Formatting.RED.getColorValue());
+            return;
+        }
+        SearchSnapshot snapshot = search.getSnapshot();
+        SearchSource source = getSource(snapshot);
+        if (source == null) {
+            return;
+        }
+        int row;
+        if (archive == null && !isSearching()) {
+            row = AdvancedChat.getChatLogData().findNotAfter(time);
+        } else {
+            row = source.findNotAfter(time);
+        }
+        if (isSearching()) {
+            // Matches are in row order, so find the first one that isn't newer
+            row = Arrays.binarySearch(snapshot.getMatches(), 0, snapshot.getMatchCount(), row);
+            if (row < 0) {
+                row = -row - 1;
+            }
+        }
+        scrolledLines = row;
+    }
+
+    @Override
+    public void removed() {
+        search.cancel();
+        archive = null;
+        closeArchive();
+        super.removed();
+    }
+
+    private void closeArchive() {
+        if (archiveReader != null) {
+            archiveReader.close();
+            archiveReader = null;
+        }
+    }
+
+    /**
+     * Gets what is currently shown. Either everything, or the results of the search.
+     */
+    private SearchSource getSource(SearchSnapshot snapshot) {
+        if (isSearching()) {
+            return snapshot.getSource();
+        }
+        if (archive != null) {
+            return archive;
+        }
+        return new MessageListSource(AdvancedChat.getChatLogData().getMessages());
+    }
+
+    private int getRowCount(SearchSnapshot snapshot, SearchSource source) {
+        if (source == null) {
+            return 0;
+        }
+        if (isSearching()) {
+            return snapshot.getMatchCount();
+        }
+        return source.size();
+    }
+
+    private Text getRow(SearchSnapshot snapshot, SearchSource source, int row) {
+        if (isSearching()) {
+            return source.getText(snapshot.getMatches()[row]);
+        }
+        return source.getText(row);
+    }
+
     @Override
     public void render(MatrixStack matrices, int mouseX, int mouseY, float delta) {
         super.render(matrices, mouseX, mouseY, delta);
         drawCenteredString(matrices, client.textRenderer, "ChatLog", client.getWindow().getScaledWidth()/2, 20, ColorUtil.WHITE.color());
         int windowHeight = client.getWindow().getScaledHeight();
         int maxheight =  windowHeight - 90;
-        List<ChatLogMessage> filteredLines = AdvancedChat.getChatLogData().getMessages();
         int lines = 0;
         int lineHeight = ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue();
         int bottomScreenOffset = 20;
         ColorUtil.SimpleColor textColor = ConfigStorage.ChatScreen.EMPTY_TEXT_COLOR.config.getSimpleColor();
-        if (tab != null) {
-            filteredLines = filteredLines.stream().filter(filter -> Arrays.asList(filter.getTab()).contains(tab)).collect(Collectors.toList());
+        ChatLogExporter exporter = ChatLogExporter.getInstance();
+        if (exporter.isRunning()) {
+            drawStringWithShadow(matrices, client.textRenderer, "Exporting " + (int) (exporter.getProgress() * 100) + "%", 10, 60, ColorUtil.GRAY.color());
+        } else if (exporter.getStatus() != null) {
+            drawStringWithShadow(matrices, client.textRenderer, exporter.getStatus(), 10, 60, ColorUtil.GRAY.color());
         }
-        if (!searchText.equals("")) {
-            try {
-                if (searchFull.isChecked()) {
-                    ArrayList<UUID> uuids = new ArrayList<>();
-                    filteredLines.forEach(line -> {
-                        if (SearchUtils.isMatch(line.getDisplayText().getString(), searchText, findType)) {
-                            uuids.add(line.getUuid());
-                        }
-                    });
-                    filteredLines = filteredLines.stream().filter(filter -> uuids.contains(filter.getUuid())).collect(Collectors.toList());
-                } else {
-                    filteredLines = filteredLines.stream().filter(filter -> SearchUtils.isMatch(filter.getDisplayText().getString(), searchText, findType)).collect(Collectors.toList());
-                }
-            } catch (PatternSyntaxException e) {
-                drawStringWithShadow(matrices, client.textRenderer, "Bad search!", 20, windowHeight - bottomScreenOffset - lineHeight, textColor.color());
-                super.render(matrices, mouseX, mouseY, delta);
+        SearchSnapshot snapshot = search.getSnapshot();
+        if (isSearching()) {
+            if (snapshot.getError() != null) {
+                drawStringWithShadow(matrices, client.textRenderer, "Bad search! " + snapshot.getError(), 20, windowHeight - bottomScreenOffset - lineHeight, textColor.color());
                 return;
             }
+            String status = snapshot.getMatchCount() + " found";
+            if (!snapshot.isDone()) {
+                status = "Searching " + (int) (snapshot.getProgress() * 100) + "% - " + status;
+            }
+            drawCenteredString(matrices, client.textRenderer, status, client.getWindow().getScaledWidth() / 2, 55, ColorUtil.GRAY.color());
         }
+        SearchSource source = getSource(snapshot);
+        int size = getRowCount(snapshot, source);
 
-
-        if (filteredLines != null && filteredLines.size() > 0) {
+        if (size > 0) {
             if (scrolledLines < 0) {
                 scrolledLines = 0;
             }
-            if (scrolledLines >= filteredLines.size()) {
-                scrolledLines = filteredLines.size() - 1;
+            if (scrolledLines >= size) {
+                scrolledLines = size - 1;
             }
             int startLine = scrolledLines + 1;
-            int endLine = filteredLines.size();
-            for (int i = 0; i + scrolledLines < filteredLines.size(); i++) {
-                ChatLogMessage line = filteredLines.get(i + scrolledLines);
+            int endLine = size;
+            for (int i = 0; i + scrolledLines < size; i++) {
                 lines++;
                 int relativeHeight = (lines * lineHeight);
                 int height = (windowHeight - bottomScreenOffset) - relativeHeight;
@@ -183,11 +416,14 @@ public class ChatLogScreen extends GuiBase {
                     endLine = i + scrolledLines;
                     break;
                 }
-                drawTextWithShadow(matrices, client.textRenderer, line.getDisplayText(), 20, height + 1, textColor.color());
+                Text line = getRow(snapshot, source, i + scrolledLines);
+                if (line != null) {
+                    drawTextWithShadow(matrices, client.textRenderer, line, 20, height + 1, textColor.color());
+                }
             }
-            drawCenteredString(matrices, client.textRenderer, startLine + "-" + endLine + "/" + filteredLines.size(), client.getWindow().getScaledWidth() / 2, 10, ColorUtil.WHITE.color());
+            drawCenteredString(matrices, client.textRenderer, startLine + "-" + endLine + "/" + size, client.getWindow().getScaledWidth() / 2, 10, ColorUtil.WHITE.color());
 
-        } else {
+        } else if (!isSearching() || snapshot.isDone()) {
             drawStringWithShadow(matrices, client.textRenderer, "Nothing found...", 20, windowHeight - bottomScreenOffset - lineHeight, textColor.color());
         }
 
@@ -223,13 +459,17 @@ public class ChatLogScreen extends GuiBase {
 //      trueY = MathHelper.floor(trueY * (AdvancedChat.configStorage.chatConfig.lineSpace + 1.0D));
         // TODO fix
         if (trueX >= 0.0D && trueY >= 0.0D) {
-            int numOfMessages = Math.min(this.getVisibleLineCount(), AdvancedChat.getChatLogData().getMessages().size());
+            // Use one snapshot throughout since the search may publish a new one at any time
+            SearchSnapshot snapshot = search.getSnapshot();
+            SearchSource source = getSource(snapshot);
+            int size = getRowCount(snapshot, source);
+            int numOfMessages = Math.min(this.getVisibleLineCount(), size);
             if (trueX <= (double) MathHelper.floor((double) getWidth())) {
                 if (trueY < (double)(9 * numOfMessages + numOfMessages)) {
                     int lineNum = (int)(trueY / ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue() + (double)this.scrolledLines);
-                    if (lineNum >= 0 && lineNum < AdvancedChat.getChatLogData().getMessages().size() && lineNum <= getVisibleLineCount() + scrolledLines) {
-                        ChatLogMessage chatHudLine = AdvancedChat.getChatLogData().getMessages().get(lineNum);
-                        return this.client.textRenderer.getTextHandler().getStyleAt(chatHudLine.getDisplayText(), (int)trueX - 20);
+                    if (lineNum >= 0 && lineNum < size && lineNum <= getVisibleLineCount() + scrolledLines) {
+                        Text line = getRow(snapshot, source, lineNum);
+                        return line == null ? null : this.client.textRenderer.getTextHandler().getStyleAt(line, (int)trueX - 20);
                     }
                 }
             }
@@ -9,10 +9,6 @@ import io.github.darkkronicle.advancedchat.chat.ChatMessage;
 import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.util.ColorUtil;
-import io.github.darkkronicle.advancedchat.util.EasingMethod;
-import io.github.darkkronicle.advancedchat.util.FluidText;
-import io.github.darkkronicle.advancedchat.util.LimitedInteger;
-import io.github.darkkronicle.advancedchat.util.RawText;
 import lombok.Getter;
 import lombok.Setter;
 import net.fabricmc.api.EnvType;
@@ -23,11 +19,8 @@ import net.minecraft.client.sound.PositionedSoundInstance;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.sound.SoundEvents;
 import net.minecraft.text.Style;
-import net.minecraft.text.Text;
-import net.minecraft.text.TextColor;
 import net.minecraft.util.Identifier;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Environment(EnvType.CLIENT)
@@ -46,6 +39,9 @@ public class ChatWindow {
 
     private ConfigStorage.Visibility visibility = (ConfigStorage.Visibility) ConfigStorage.ChatScreen.VISIBILITY.config.getOptionListValue();
 
+    /**
+     * Messages of the tab, newest first. Owned by {@link ChatHistory}.
+     */
     private List<ChatMessage> lines;
 
     @Getter
@@ -55,6 +51,25 @@ public class ChatWindow {
     @Getter
     private AbstractChatTab tab;
 
+    private WindowFramebuffer cache = null;
+
+    /**
+     * If the cached render no longer represents what should be on screen.
+     */
+    private boolean dirty = true;
+
+    /**
+     * The tick when a visible message starts (or continues) fading and the cache has to be redrawn.
+     */
+    private int nextRedrawTick = Integer.MAX_VALUE;
+
+    /**
+     * The settings the cache was last drawn with. A new snapshot means the config changed.
+     */
+    private RenderSettings cachedSettings = null;
+
+    private final HeadBatch heads = new HeadBatch();
+
     private final static Identifier X_ICON = new Identifier(AdvancedChat.MOD_ID, "textures/gui/chatwindow/x_icon.png");
 
     public ChatWindow(AbstractChatTab tab) {
@@ -69,20 +84,35 @@ public class ChatWindow {
     public void setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        markDirty();
+    }
+
+    public void markDirty() {
+        this.dirty = true;
+    }
+
+    /**
+     * Frees the offscreen buffer if one was created.
+     */
+    public void close() {
+        if (cache != null) {
+            cache.delete();
+            cache = null;
+        }
     }
 
     public void setTab(AbstractChatTab tab) {
         this.tab = tab;
-        this.lines = new ArrayList<>();
-        List<ChatMessage> messages = ChatHistory.getInstance().getMessages();
-        for (int i = messages.size() - 1; i >= 0; i--) {
-            addMessage(messages.get(i));
-        }
+        this.lines = ChatHistory.getInstance().getMessages(tab);
+        markDirty();
     }
 
+    /**
+     * Called once a message was added to {@link ChatHistory}
+     */
     public void addMessage(ChatMessage message) {
-        if (message.getTabs().contains(tab)) {
-            this.lines.add(0, message.shallowClone(getPaddedWidth()));
+        if (message.isInTab(tab)) {
+            markDirty();
         }
         if (scrolledLines > 0) {
             scrolledLines++;
@@ -90,6 +120,7 @@ public class ChatWindow {
     }
 
     public void scroll(double amount) {
+        int previous = this.scrolledLines;
         this.scrolledLines = (int)((double) this.scrolledLines + amount);
         if (this.scrolledLines > lines.size()) {
             this.scrolledLines = lines.size();
@@ -98,62 +129,64 @@ public class ChatWindow {
         if (this.scrolledLines <= 0) {
             this.scrolledLines = 0;
         }
+        if (previous != this.scrolledLines) {
+            markDirty();
+        }
     }
 
     public void resetScroll() {
+        if (this.scrolledLines != 0) {
+            markDirty();
+        }
         this.scrolledLines = 0;
     }
 
     public int getPaddedWidth() {
-        return getScaledWidth() - ConfigStorage.ChatScreen.LEFT_PAD.config.getIntegerValue() - ConfigStorage.ChatScreen.RIGHT_PAD.config.getIntegerValue() - headOffset();
+        return getPaddedWidth(RenderSettings.getInstance());
     }
 
-    private int headOffset() {
-        return ConfigStorage.General.CHAT_HEADS.config.getBooleanValue() ? 10 : 0;
+    private int getPaddedWidth(RenderSettings settings) {
+        return getScaledWidth(settings) - settings.getLeftPad() - settings.getRightPad() - settings.getHeadOffset();
     }
 
-    private int getActualY(int y) {
-        return (int) Math.ceil(this.y / getScale()) - y;
+    private int getActualY(RenderSettings settings, int y) {
+        return (int) Math.ceil(this.y / settings.getScale()) - y;
     }
 
-    private int getLeftX() {
-        return (int) Math.ceil(x / getScale());
+    private int getLeftX(RenderSettings settings) {
+        return (int) Math.ceil(x / settings.getScale());
     }
 
-    private int getPaddedLeftX() {
-        return getLeftX() + (int) Math.ceil(ConfigStorage.ChatScreen.LEFT_PAD.config.getIntegerValue() + headOffset() / getScale());
+    private int getPaddedLeftX(RenderSettings settings) {
+        return getLeftX(settings) + (int) Math.ceil(settings.getLeftPad() + settings.getHeadOffset() / settings.getScale());
     }
 
-    private double getScale() {
-        return ConfigStorage.ChatScreen.CHAT_SCALE.config.getDoubleValue();
+    private int getRightX(RenderSettings settings) {
+        return getLeftX(settings) + getScaledWidth(settings);
     }
 
-    private int getRightX() {
-        return getLeftX() + getScaledWidth();
-    }
-
-    private int getPaddedRightX() {
-        return getRightX() - ConfigStorage.ChatScreen.RIGHT_PAD.config.getIntegerValue();
+    private int getPaddedRightX(RenderSettings settings) {
+        return getRightX(settings) - settings.getRightPad();
     }
 
     public int getActualHeight() {
         return height + getBarHeight();
     }
 
-    private int getScaledHeight() {
-        return (int) Math.ceil(height / getScale());
+    private int getScaledHeight(RenderSettings settings) {
+        return (int) Math.ceil(height / settings.getScale());
     }
 
-    private int getScaledWidth() {
-        return (int) Math.ceil(width / getScale());
+    private int getScaledWidth(RenderSettings settings) {
+        return (int) Math.ceil(width / settings.getScale());
     }
 
     private int getBarHeight() {
         return 14;
     }
 
-    private int getScaledBarHeight() {
-        return (int) Math.ceil(14 * getScale());
+    private int getScaledBarHeight(RenderSettings settings) {
+        return (int) Math.ceil(14 * settings.getScale());
     }
 
     public boolean isMouseOver(double mouseX, double mouseY) {
@@ -164,7 +197,36 @@ public class ChatWindow {
         if (visibility == ConfigStorage.Visibility.FOCUSONLY && !focused) {
             return;
         }
+        RenderSettings settings = RenderSettings.getInstance();
+        if (!settings.isCacheRender()) {
+            close();
+            renderWindow(matrixStack, settings, ticks, focused);
+            return;
+        }
+        if (focused) {
+            // Focused windows are interactive, so draw them directly and rebuild the cache once unfocused.
+            markDirty();
+            renderWindow(matrixStack, settings, ticks, true);
+            return;
+        }
+        if (cache == null) {
+            cache = new WindowFramebuffer();
+        }
+        if (cache.ensureSize(x, y - height, width, height) || settings != cachedSettings) {
+            markDirty();
+        }
+        if (dirty || ticks >= nextRedrawTick) {
+            dirty = false;
+            cachedSettings = settings;
+            cache.beginWrite();
+            renderWindow(matrixStack, settings, ticks, false);
+            cache.endWrite();
+        }
+        cache.draw(matrixStack);
+    }
 
+    private void renderWindow(MatrixStack matrixStack, RenderSettings settings, int ticks, boolean focused) {
+        nextRedrawTick = Integer.MAX_VALUE;
         int lineCount = lines.size();
 
         boolean chatFocused = visibility == ConfigStorage.Visibility.ALWAYS || focused;
@@ -175,115 +237,154 @@ public class ChatWindow {
 
         matrixStack.push();
         RenderSystem.pushMatrix();
-        RenderSystem.scalef((float) getScale(), (float) getScale(), 1);
+        RenderSystem.scalef((float) settings.getScale(), (float) settings.getScale(), 1);
 
         int lines = 0;
         int renderedLines = 0;
-        int scaledWidth = getScaledWidth();
-        int scaledHeight = getScaledHeight();
-        int leftX = getLeftX();
-        int padLX = getPaddedLeftX();
-        int rightX = getRightX();
-        int padRX = getPaddedRightX();
-        LimitedInteger y = new LimitedInteger(getScaledHeight() - ConfigStorage.ChatScreen.TOP_PAD.config.getIntegerValue(), ConfigStorage.ChatScreen.BOTTOM_PAD.config.getIntegerValue());
-
-        for (int j = 0; j < this.lines.size(); j++) {
-            ChatMessage message = this.lines.get(j)  ;
+        int scaledWidth = getScaledWidth(settings);
+        int scaledHeight = getScaledHeight(settings);
+        int leftX = getLeftX(settings);
+        int padLX = getPaddedLeftX(settings);
+        int rightX = getRightX(settings);
+        int padRX = getPaddedRightX(settings);
+        int lineSpace = settings.getLineSpace();
+        int messageSpace = settings.getMessageSpace();
+        int limit = scaledHeight - settings.getTopPad();
+        int y = settings.getBottomPad();
+        int wrapWidth = getPaddedWidth(settings);
+
+        int end = chatFocused ? this.lines.size() : getFadedCutoff(settings, ticks);
+        if (AllocationProbe.ENABLED) {
+            AllocationProbe.getInstance().begin();
+        }
+        for (int j = 0; j < end; j++) {
+            ChatMessage message = this.lines.get(j);
+            List<ChatMessage.AdvancedChatLine> messageLines = message.getLines(wrapWidth);
             // To get the proper index of reversed
-            for (int i = message.getLineCount() - 1; i >= 0; i--) {
-                int lineIndex = message.getLineCount() - i - 1;
+            for (int i = messageLines.size() - 1; i >= 0; i--) {
+                int lineIndex = messageLines.size() - i - 1;
                 lines++;
                 if (lines < scrolledLines) {
                     continue;
                 }
-                if (!y.incrementIfPossible(ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue())) {
+                if (y + lineSpace >= limit) {
                     break;
                 }
-                ChatMessage.AdvancedChatLine line = message.getLines().get(i);
-                drawLine(matrixStack, line, leftX, y.getValue(), padLX, padRX, lineIndex, j, renderedLines, chatFocused, ticks);
+                y += lineSpace;
+                ChatMessage.AdvancedChatLine line = messageLines.get(i);
+                drawLine(matrixStack, settings, line, leftX, y, padLX, padRX, lineIndex, messageLines.size(), j, renderedLines, chatFocused, ticks);
                 renderedLines++;
             }
             if (lines >= scrolledLines) {
                 if (lines == lineCount) {
                     break;
                 }
-                if (!y.isPossible(ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue() + ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue()) || !y.incrementIfPossible(ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue())) {
+                if (y + lineSpace + messageSpace >= limit || y + messageSpace >= limit) {
                     break;
                 }
+                y += messageSpace;
             }
         }
+        if (AllocationProbe.ENABLED) {
+            AllocationProbe.getInstance().end(renderedLines);
+        }
         if (renderedLines == 0) {
-            y.setValue(0);
+            y = 0;
         }
+        heads.draw(matrixStack);
 
         if (focused) {
             if (isSelected()) {
                 tab.resetUnread();
             }
-            RenderUtils.drawOutline(leftX, getActualY(0) - scaledHeight - 1, scaledWidth, scaledHeight + 1, tab.getBorderColor().color());
+            RenderUtils.drawOutline(leftX, getActualY(settings, 0) - scaledHeight - 1, scaledWidth, scaledHeight + 1, tab.getBorderColor().color());
             int scaledBar = getBarHeight();
-            int newY = getScaledHeight() + scaledBar;
+            int newY = getScaledHeight(settings) + scaledBar;
             String label = tab.getAbreviation();
             int labelWidth = StringUtils.getStringWidth(label) + 8;
-            RenderUtils.drawRect(leftX, getActualY(newY), labelWidth, scaledBar, tab.getMainColor().color());
-            RenderUtils.drawOutline(leftX, getActualY(newY), labelWidth, scaledBar, tab.getBorderColor().withAlpha(180).color());
-            DrawableHelper.drawCenteredString(matrixStack, MinecraftClient.getInstance().textRenderer, tab.getAbreviation(), leftX + (labelWidth) / 2, getActualY(newY - 3), ColorUtil.WHITE.color());
-            RenderUtils.drawRect(leftX + labelWidth, getActualY(newY), getScaledWidth() - labelWidth, scaledBar, selected ? tab.getMainColor().color() : tab.getInnerColor().color());
-            RenderUtils.drawOutline(leftX + labelWidth, getActualY(newY), getScaledWidth() - labelWidth, scaledBar, tab.getBorderColor().color());
+            RenderUtils.drawRect(leftX, getActualY(settings, newY), labelWidth, scaledBar, tab.getMainColor().color());
+            RenderUtils.drawOutline(leftX, getActualY(settings, newY), labelWidth, scaledBar, tab.getBorderColor().withAlpha(180).color());
+            DrawableHelper.drawCenteredString(matrixStack, MinecraftClient.getInstance().textRenderer, tab.getAbreviation(), leftX + (labelWidth) / 2, getActualY(settings, newY - 3), ColorUtil.WHITE.color());
+            RenderUtils.drawRect(leftX + labelWidth, getActualY(settings, newY), getScaledWidth(settings) - labelWidth, scaledBar, selected ? tab.getMainColor().color() : tab.getInnerColor().color());
+            RenderUtils.drawOutline(leftX + labelWidth, getActualY(settings, newY), getScaledWidth(settings) - labelWidth, scaledBar, tab.getBorderColor().color());
 
-            RenderUtils.drawOutline(rightX - scaledBar, getActualY(newY), scaledBar, scaledBar, tab.getBorderColor().color());
-            RenderUtils.drawOutline(rightX - scaledBar * 2 + 1, getActualY(newY), scaledBar, scaledBar, tab.getBorderColor().color());
-            RenderUtils.drawOutline(rightX - scaledBar * 3 + 2, getActualY(newY), scaledBar, scaledBar, tab.getBorderColor().color());
+            RenderUtils.drawOutline(rightX - scaledBar, getActualY(settings, newY), scaledBar, scaledBar, tab.getBorderColor().color());
+            RenderUtils.drawOutline(rightX - scaledBar * 2 + 1, getActualY(settings, newY), scaledBar, scaledBar, tab.getBorderColor().color());
+            RenderUtils.drawOutline(rightX - scaledBar * 3 + 2, getActualY(settings, newY), scaledBar, scaledBar, tab.getBorderColor().color());
 
             RenderUtils.color(1, 1, 1, 1);
             RenderUtils.bindTexture(X_ICON);
-            DrawableHelper.drawTexture(matrixStack, rightX - scaledBar * 2 + 2, getActualY(newY - 1), scaledBar - 2, scaledBar - 2, 0, 0, 32, 32, 32, 32);
+            DrawableHelper.drawTexture(matrixStack, rightX - scaledBar * 2 + 2, getActualY(settings, newY - 1), scaledBar - 2, scaledBar - 2, 0, 0, 32, 32, 32, 32);
 
             RenderUtils.bindTexture(visibility.getTexture());
-            DrawableHelper.drawTexture(matrixStack, rightX - scaledBar * 3 + 3, getActualY(newY - 1), scaledBar - 2, scaledBar - 2, 0, 0, 32, 32, 32, 32);
+            DrawableHelper.drawTexture(matrixStack, rightX - scaledBar * 3 + 3, getActualY(settings, newY - 1), scaledBar - 2, scaledBar - 2, 0, 0, 32, 32, 32, 32);
         }
 
         if (chatFocused) {
-            drawRect(leftX, getActualY(y.getValue()), rightX, getActualY(getScaledHeight()), tab.getInnerColor().color());
+            drawRect(matrixStack, leftX, getActualY(settings, y), rightX, getActualY(settings, getScaledHeight(settings)), tab.getInnerColor().color());
             // Scroll bar
             float add = (float) (scrolledLines) / (lineCount + 1);
-            int scrollHeight = (int) (add * getScaledHeight());
-            RenderUtils.drawRect(getScaledWidth() + leftX - 1, getActualY(scrollHeight + 10), 1, 10, ColorUtil.WHITE.color());
+            int scrollHeight = (int) (add * getScaledHeight(settings));
+            WindowFramebuffer.drawRect(matrixStack, getScaledWidth(settings) + leftX - 1, getActualY(settings, scrollHeight + 10), 1, 10, ColorUtil.WHITE.color());
         }
 
         RenderSystem.popMatrix();
     }
 
-    private void drawLine(MatrixStack matrixStack, ChatMessage.AdvancedChatLine line, int x, int y, int pLX, int pRX, int lineIndex, int messageIndex, int renderedLines, boolean focused, int ticks) {
-        int height = ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue();
+    /**
+     * Finds the first message that has completely faded away. Lines are newest first, so
+     * everything from that index on is invisible too.
+     */
+    private int getFadedCutoff(RenderSettings settings, int ticks) {
+        int fadedAge = settings.getFadedAge();
+        if (fadedAge == Integer.MAX_VALUE) {
+            return lines.size();
+        }
+        int low = 0;
+        int high = lines.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ticks - lines.get(mid).getCreationTick() >= fadedAge) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private void drawLine(MatrixStack matrixStack, RenderSettings settings, ChatMessage.AdvancedChatLine line, int x, int y, int pLX, int pRX, int lineIndex, int lineCount, int messageIndex, int renderedLines, boolean focused, int ticks) {
+        int height = settings.getLineSpace();
         if (renderedLines == 0) {
             if (focused) {
-                height += ConfigStorage.ChatScreen.BOTTOM_PAD.config.getIntegerValue();
+                height += settings.getBottomPad();
             }
         } else if (lineIndex == 0) {
-            height += ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue();
+            height += settings.getMessageSpace();
             // Start of a line
         }
-        ColorUtil.SimpleColor background = line.getParent().getBackground();
-        ColorUtil.SimpleColor text = ConfigStorage.ChatScreen.EMPTY_TEXT_COLOR.config.getSimpleColor();
-        if (background == null) {
-            background = tab.getInnerColor();
-        }
-        if (messageIndex % 2 == 0 && ConfigStorage.ChatScreen.ALTERNATE_LINES.config.getBooleanValue()) {
-            if (background.alpha() <= 215) {
-                background = background.withAlpha(background.alpha() + 40);
+        ChatMessage message = line.getParent();
+        int background = message.getBackground() == null ? tab.getInnerColor().color() : message.getBackground().color();
+        int text = settings.getEmptyTextColor().color();
+        if (messageIndex % 2 == 0 && settings.isAlternateLines()) {
+            int alpha = ColorUtil.alpha(background);
+            if (alpha <= 215) {
+                background = ColorUtil.withAlpha(background, alpha + 40);
             } else {
-                background = background.withAlpha(background.alpha() - 40);
+                background = ColorUtil.withAlpha(background, alpha - 40);
             }
         }
         float applied = 1;
         if (!focused) {
-            int fadeStart = ConfigStorage.ChatScreen.FADE_START.config.getIntegerValue();
-            int fadeStop = fadeStart + ConfigStorage.ChatScreen.FADE_TIME.config.getIntegerValue();
-            int timeAlive = ticks - line.getParent().getCreationTick();
-            float percent = (float) Math.min(1, (double) (timeAlive - fadeStart) / (double) (fadeStop - fadeStart));
-            applied = 1 - (float) ((EasingMethod) ConfigStorage.ChatScreen.FADE_TYPE.config.getOptionListValue()).apply(percent);
-            applied = Math.max(0, applied);
+            int fadeStart = settings.getFadeStart();
+            int fadeStop = fadeStart + settings.getFadeTime();
+            int timeAlive = ticks - message.getCreationTick();
+            if (timeAlive < fadeStart) {
+                nextRedrawTick = Math.min(nextRedrawTick, message.getCreationTick() + fadeStart);
+            } else if (timeAlive < fadeStop) {
+                nextRedrawTick = Math.min(nextRedrawTick, ticks + 1);
+            }
+            applied = settings.getFadeAlpha(timeAlive);
             if (applied <= 0) {
                 return;
             }
@@ -292,59 +393,56 @@ public class ChatWindow {
                 text = ColorUtil.fade(text, applied);
             }
         }
-        RenderUtils.drawRect(x, getActualY(y), getScaledWidth(), height, background.color());
-        if (lineIndex == line.getParent().getLineCount() - 1 && line.getParent().getOwner() != null && ConfigStorage.General.CHAT_HEADS.config.getBooleanValue()) {
-            RenderUtils.color(1, 1, 1, applied);
-            client.getTextureManager().bindTexture(line.getParent().getOwner().getTexture());
-            DrawableHelper.drawTexture(matrixStack, pLX - 10, getActualY(y), 8, 8, 8, 8, 8, 8, 64, 64);
-            DrawableHelper.drawTexture(matrixStack, pLX - 10, getActualY(y), 8, 8, 40, 8, 8, 8, 64, 64);
-            RenderUtils.color(1, 1, 1, 1);
+        int lineY = getActualY(settings, y);
+        WindowFramebuffer.drawRect(matrixStack, x, lineY, getScaledWidth(settings), height, background);
+        if (lineIndex == lineCount - 1 && message.getOwner() != null && message.getOwner().getEntry() != null && settings.isChatHeads()) {
+            heads.add(message.getOwner().getTexture(), pLX - 10, lineY, applied);
         }
 
-        Text render = line.getText();
-        if (line.getParent().getStacks() > 0 && lineIndex == 0) {
-            FluidText toPrint = new FluidText(render);
-            Style style = Style.EMPTY;
-            TextColor color = TextColor.fromRgb(ColorUtil.GRAY.color());
-            style = style.withColor(color);
-            toPrint.getRawTexts().add(new RawText(" (" + line.getParent().getStacks() + ")", style));
-            render = toPrint;
+        DrawableHelper.drawTextWithShadow(matrixStack, client.textRenderer, line.getOrderedText(), pLX, lineY + 1, text);
+        if (lineIndex == 0 && message.getStackSuffix() != null) {
+            DrawableHelper.drawTextWithShadow(matrixStack, client.textRenderer, message.getStackSuffix(), pLX + line.getWidth(), lineY + 1, text);
         }
-
-        DrawableHelper.drawTextWithShadow(matrixStack, client.textRenderer, render, pLX, getActualY(y) + 1, text.color());
     }
 
     public Style getText(double mouseX, double mouseY) {
         if (!AdvancedChatHud.getInstance().isChatFocused()) {
             return null;
         }
+        RenderSettings settings = RenderSettings.getInstance();
         double relX = mouseX;
         double relY = y - mouseY;
-        double trueX = relX / getScale() - getPaddedLeftX();
-        double trueY = relY / getScale();
+        double trueX = relX / settings.getScale() - getPaddedLeftX(settings);
+        double trueY = relY / settings.getScale();
         // Divide it by chat scale to get where it actually is
         if (trueX < 0.0D || trueY < 0.0D) {
             return null;
         }
-        if (trueY > getScaledHeight() || trueX > getScaledWidth()) {
+        if (trueY > getScaledHeight(settings) || trueX > getScaledWidth(settings)) {
             return null;
         }
 
         int lines = 0;
         int lineCount = this.lines.size();
-        LimitedInteger y = new LimitedInteger(getScaledHeight(), ConfigStorage.ChatScreen.BOTTOM_PAD.config.getIntegerValue());
+        int lineSpace = settings.getLineSpace();
+        int messageSpace = settings.getMessageSpace();
+        int limit = getScaledHeight(settings);
+        int y = settings.getBottomPad();
+        int wrapWidth = getPaddedWidth(settings);
         for (ChatMessage message : this.lines) {
+            List<ChatMessage.AdvancedChatLine> messageLines = message.getLines(wrapWidth);
             // To get the proper index of reversed
-            for (int i = message.getLineCount() - 1; i >= 0; i--) {
+            for (int i = messageLines.size() - 1; i >= 0; i--) {
                 lines++;
                 if (lines < scrolledLines) {
                     continue;
                 }
-                if (!y.incrementIfPossible(ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue())) {
+                if (y + lineSpace >= limit) {
                     break;
                 }
-                if (trueY <= y.getValue() && trueY >= y.getValue() - ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue()) {
-                    ChatMessage.AdvancedChatLine line = message.getLines().get(i);
+                y += lineSpace;
+                if (trueY <= y && trueY >= y - lineSpace) {
+                    ChatMessage.AdvancedChatLine line = messageLines.get(i);
                     return this.client.textRenderer.getTextHandler().getStyleAt(line.getText(), (int) trueX);
                 }
             }
@@ -352,15 +450,16 @@ public class ChatWindow {
                 if (lines == lineCount) {
                     break;
                 }
-                if (!y.isPossible(ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue() + ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue()) || !y.incrementIfPossible(ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue())) {
+                if (y + lineSpace + messageSpace >= limit || y + messageSpace >= limit) {
                     break;
                 }
+                y += messageSpace;
             }
         }
         return null;
     }
 
-    private static void drawRect(int x1, int y1, int x2, int y2, int color) {
+    private static void drawRect(MatrixStack matrixStack, int x1, int y1, int x2, int y2, int color) {
         if (y1 > y2) {
             int med = y2;
             y2 = y1;
@@ -371,15 +470,17 @@ public class ChatWindow {
             x2 = x1;
             x1 = med;
         }
-        RenderUtils.drawRect(x1, y1, x2 - x1, y2 - y1, color);
+        WindowFramebuffer.drawRect(matrixStack, x1, y1, x2 - x1, y2 - y1, color);
     }
 
     public boolean isMouseOverDragBar(double mouseX, double mouseY) {
-        return isMouseOver(mouseX, mouseY) && mouseX <= x + width - (getScaledBarHeight() * 3) && mouseY <= y - height;
+        RenderSettings settings = RenderSettings.getInstance();
+        return isMouseOver(mouseX, mouseY) && mouseX <= x + width - (getScaledBarHeight(settings) * 3) && mouseY <= y - height;
     }
 
     public boolean onMouseClicked(double mouseX, double mouseY, int button) {
-        boolean onButtons = isMouseOverDragBar(mouseX - (getScaledBarHeight() * 2), mouseY) && mouseX >= x + width - getScaledBarHeight() * 3;
+        RenderSettings settings = RenderSettings.getInstance();
+        boolean onButtons = isMouseOverDragBar(mouseX - (getScaledBarHeight(settings) * 2), mouseY) && mouseX >= x + width - getScaledBarHeight(settings) * 3;
         if (!onButtons) {
             return false;
         }
@@ -388,6 +489,7 @@ public class ChatWindow {
             AdvancedChatHud.getInstance().deleteWindow(this);
         } else if (x >= 26) {
             visibility = visibility.cycle(true);
+            markDirty();
         }
         this.client.getSoundManager().play(PositionedSoundInstance.master(SoundEvents.UI_BUTTON_CLICK, 1.0F));
         return true;
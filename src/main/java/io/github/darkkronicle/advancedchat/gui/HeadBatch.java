@@ -0,0 +1,100 @@
+package io.github.darkkronicle.advancedchat.gui;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Matrix4f;
+import org.lwjgl.opengl.GL11;
+
+import java.util.Arrays;
+
+/**
+ * Collects the chat heads of a window during a frame so that every skin only has
+ * to be bound once, no matter how many messages the player sent.
+ *
+ * The backing arrays are reused between frames.
+ */
+@Environment(EnvType.CLIENT)
+public class HeadBatch {
+
+    private static final float FACE_U = 8 / 64f;
+    private static final float HAT_U = 40 / 64f;
+    private static final float FACE_V = 8 / 64f;
+    private static final float SIZE = 8 / 64f;
+
+    private Identifier[] textures = new Identifier[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private float[] alphas = new float[16];
+    private boolean[] drawn = new boolean[16];
+    private int size = 0;
+
+    public void add(Identifier texture, int x, int y, float alpha) {
+        if (size == textures.length) {
+            int newLength = size * 2;
+            textures = Arrays.copyOf(textures, newLength);
+            xs = Arrays.copyOf(xs, newLength);
+            ys = Arrays.copyOf(ys, newLength);
+            alphas = Arrays.copyOf(alphas, newLength);
+            drawn = Arrays.copyOf(drawn, newLength);
+        }
+        textures[size] = texture;
+        xs[size] = x;
+        ys[size] = y;
+        alphas[size] = alpha;
+        drawn[size] = false;
+        size++;
+    }
+
+    /**
+     * Draws everything that was added, one pass per skin, and empties the batch.
+     */
+    public void draw(MatrixStack matrixStack) {
+        if (size == 0) {
+            return;
+        }
+        Matrix4f matrix = matrixStack.peek().getModel();
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder buffer = tessellator.getBuffer();
+        WindowFramebuffer.blendFunc();
+        RenderSystem.enableTexture();
+        RenderSystem.color4f(1, 1, 1, 1);
+        for (int i = 0; i < size; i++) {
+            if (drawn[i]) {
+                continue;
+            }
+            Identifier texture = textures[i];
+            MinecraftClient.getInstance().getTextureManager().bindTexture(texture);
+            buffer.begin(GL11.GL_QUADS, VertexFormats.POSITION_COLOR_TEXTURE);
+            for (int j = i; j < size; j++) {
+                if (drawn[j] || !texture.equals(textures[j])) {
+                    continue;
+                }
+                drawn[j] = true;
+                quad(buffer, matrix, xs[j], ys[j], alphas[j], FACE_U);
+                quad(buffer, matrix, xs[j], ys[j], alphas[j], HAT_U);
+            }
+            tessellator.draw();
+        }
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(textures, 0, size, null);
+        size = 0;
+    }
+
+    private static void quad(BufferBuilder buffer, Matrix4f matrix, int x, int y, float alpha, float u) {
+        buffer.vertex(matrix, x, y + 8, 0).color(1, 1, 1, alpha).texture(u, FACE_V + SIZE).next();
+        buffer.vertex(matrix, x + 8, y + 8, 0).color(1, 1, 1, alpha).texture(u + SIZE, FACE_V + SIZE).next();
+        buffer.vertex(matrix, x + 8, y, 0).color(1, 1, 1, alpha).texture(u + SIZE, FACE_V).next();
+        buffer.vertex(matrix, x, y, 0).color(1, 1, 1, alpha).texture(u, FACE_V).next();
+    }
+
+}
@@ -0,0 +1,122 @@
+package io.github.darkkronicle.advancedchat.gui;
+
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.util.ColorUtil;
+import io.github.darkkronicle.advancedchat.util.EasingMethod;
+import lombok.Value;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+/**
+ * Snapshot of every option the chat HUD needs while drawing.
+ *
+ * Reading malilib configs goes through a few layers of indirection, so the
+ * values are copied in here whenever the configuration is loaded or saved and
+ * the render loop only reads plain fields.
+ */
+@Environment(EnvType.CLIENT)
+@Value
+public class RenderSettings {
+
+    private static RenderSettings INSTANCE = null;
+
+    int lineSpace;
+    int messageSpace;
+    int leftPad;
+    int rightPad;
+    int topPad;
+    int bottomPad;
+    int fadeStart;
+    int fadeTime;
+    EasingMethod fadeType;
+    boolean alternateLines;
+    boolean chatHeads;
+    boolean cacheRender;
+    double scale;
+    ColorUtil.SimpleColor emptyTextColor;
+
+    /**
+     * Alpha multiplier for every tick of the fade, indexed by ticks since the fade started.
+     */
+    float[] fadeTable;
+
+    /**
+     * How many ticks a message has to be alive before it is completely invisible.
+     * {@link Integer#MAX_VALUE} if the easing never reaches zero.
+     */
+    int fadedAge;
+
+    public static RenderSettings getInstance() {
+        if (INSTANCE == null) {
+            refresh();
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Rebuilds the snapshot from {@link ConfigStorage}. Should be called whenever the config changes.
+     */
+    public static void refresh() {
+        int fadeStart = ConfigStorage.ChatScreen.FADE_START.config.getIntegerValue();
+        int fadeTime = ConfigStorage.ChatScreen.FADE_TIME.config.getIntegerValue();
+        EasingMethod fadeType = (EasingMethod) ConfigStorage.ChatScreen.FADE_TYPE.config.getOptionListValue();
+        float[] fadeTable = createFadeTable(fadeType, fadeTime);
+        int fadedAge = Integer.MAX_VALUE;
+        if (fadeTable[fadeTime] <= 0) {
+            int first = fadeTime;
+            while (first > 0 && fadeTable[first - 1] <= 0) {
+                first--;
+            }
+            fadedAge = fadeStart + first;
+        }
+        INSTANCE = new RenderSettings(
+                ConfigStorage.ChatScreen.LINE_SPACE.config.getIntegerValue(),
+                ConfigStorage.ChatScreen.MESSAGE_SPACE.config.getIntegerValue(),
+                ConfigStorage.ChatScreen.LEFT_PAD.config.getIntegerValue(),
+                ConfigStorage.ChatScreen.RIGHT_PAD.config.getIntegerValue(),
+                ConfigStorage.ChatScreen.TOP_PAD.config.getIntegerValue(),
+                ConfigStorage.ChatScreen.BOTTOM_PAD.config.getIntegerValue(),
+                fadeStart,
+                fadeTime,
+                fadeType,
+                ConfigStorage.ChatScreen.ALTERNATE_LINES.config.getBooleanValue(),
+                ConfigStorage.General.CHAT_HEADS.config.getBooleanValue(),
+                ConfigStorage.ChatScreen.CACHE_RENDER.config.getBooleanValue(),
+                ConfigStorage.ChatScreen.CHAT_SCALE.config.getDoubleValue(),
+                ConfigStorage.ChatScreen.EMPTY_TEXT_COLOR.config.getSimpleColor(),
+                fadeTable,
+                fadedAge
+        );
+    }
+
+    private static float[] createFadeTable(EasingMethod method, int fadeTime) {
+        float[] table = new float[fadeTime + 1];
+        for (int i = 0; i <= fadeTime; i++) {
+            double percent = fadeTime == 0 ? 1 : (double) i / fadeTime;
+            table[i] = Math.max(0, 1 - (float) method.apply(percent));
+        }
+        return table;
+    }
+
+    /**
+     * Gets how visible a message is.
+     *
+     * @param timeAlive Ticks since the message was created
+     * @return Multiplier from 0 (invisible) to 1 (fully shown)
+     */
+    public float getFadeAlpha(int timeAlive) {
+        int fadeTick = timeAlive - fadeStart;
+        if (fadeTick < 0) {
+            return 1;
+        }
+        return fadeTable[Math.min(fadeTick, fadeTime)];
+    }
+
+    /**
+     * Space taken up by chat heads next to the text.
+     */
+    public int getHeadOffset() {
+        return chatHeads ? 10 : 0;
+    }
+
+}
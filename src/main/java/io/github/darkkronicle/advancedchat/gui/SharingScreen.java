@@ -12,6 +12,7 @@ import fi.dy.masa.malilib.gui.button.IButtonActionListener;
 import fi.dy.masa.malilib.util.StringUtils;
 import io.github.darkkronicle.advancedchat.AdvancedChat;
 import io.github.darkkronicle.advancedchat.chat.ChatDispatcher;
+import io.github.darkkronicle.advancedchat.chat.tabs.TabClassifier;
 import io.github.darkkronicle.advancedchat.config.ChatTab;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.config.Filter;
@@ -114,6 +115,10 @@ public class SharingScreen extends GuiBase {
                     ChatDispatcher.getInstance().loadFilters();
                     parent.addGuiMessage(Message.MessageType.SUCCESS, 5000, StringUtils.translate("advancedchat.gui.message.successful"));
                 } else if (type == Type.IMPORT_TAB) {
+                    if (ConfigStorage.TABS.size() >= TabClassifier.MAX_TABS) {
+                        parent.addGuiMessage(Message.MessageType.ERROR, 5000, StringUtils.translate("advancedchat.gui.message.toomanytabs", TabClassifier.MAX_TABS));
+                        return;
+                    }
                     ChatTab.ChatTabJsonSave tabSave = new ChatTab.ChatTabJsonSave();
                     ChatTab tab = tabSave.load(new JsonParser().parse(parent.text.getText()).getAsJsonObject());
                     if (tab == null) {
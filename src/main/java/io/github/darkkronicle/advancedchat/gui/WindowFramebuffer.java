@@ -0,0 +1,173 @@
+package io.github.darkkronicle.advancedchat.gui;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Matrix4f;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * An offscreen buffer that a {@link ChatWindow} can be drawn into once and then
+ * copied onto the screen every frame until something changes.
+ *
+ * The buffer only covers the window, so drawing into it and copying it only touches those pixels.
+ * Anything drawn into it has to blend alpha the same way as color (see {@link #blendFunc()}), since
+ * the buffer starts out transparent.
+ */
+@Environment(EnvType.CLIENT)
+public class WindowFramebuffer {
+
+    private final MinecraftClient client;
+    private Framebuffer framebuffer = null;
+
+    /**
+     * Pixels from the left and top of the game window to the buffer
+     */
+    private int left = 0;
+    private int top = 0;
+
+    public WindowFramebuffer() {
+        this.client = MinecraftClient.getInstance();
+    }
+
+    /**
+     * Sets the blend function for drawing into a buffer. Color is blended as usual, and alpha builds
+     * up as source alpha plus destination alpha times one minus source alpha, so the buffer ends up
+     * with premultiplied colors and the coverage the window would have on screen. Vanilla's default
+     * replaces the destination alpha, which only works on the opaque screen.
+     */
+    public static void blendFunc() {
+        RenderSystem.enableBlend();
+        RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.SRC_ALPHA, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA,
+                GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Draws a rectangle with {@link #blendFunc()}, which looks the same on screen and in a buffer.
+     */
+    public static void drawRect(MatrixStack matrixStack, int x, int y, int width, int height, int color) {
+        float a = (color >> 24 & 255) / 255f;
+        float r = (color >> 16 & 255) / 255f;
+        float g = (color >> 8 & 255) / 255f;
+        float b = (color & 255) / 255f;
+        Matrix4f matrix = matrixStack.peek().getModel();
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder buffer = tessellator.getBuffer();
+        RenderSystem.disableTexture();
+        blendFunc();
+        buffer.begin(GL11.GL_QUADS, VertexFormats.POSITION_COLOR);
+        buffer.vertex(matrix, x, y + height, 0).color(r, g, b, a).next();
+        buffer.vertex(matrix, x + width, y + height, 0).color(r, g, b, a).next();
+        buffer.vertex(matrix, x + width, y, 0).color(r, g, b, a).next();
+        buffer.vertex(matrix, x, y, 0).color(r, g, b, a).next();
+        tessellator.draw();
+        RenderSystem.enableTexture();
+        RenderSystem.defaultBlendFunc();
+    }
+
+    /**
+     * Makes sure the buffer covers an area of the screen. A pixel is added on each side for rounding.
+     *
+     * @param x Left in scaled coordinates
+     * @param y Top in scaled coordinates
+     * @param width Width in scaled coordinates
+     * @param height Height in scaled coordinates
+     * @return True if the buffer was created, moved or resized and the contents are no longer valid
+     */
+    public boolean ensureSize(int x, int y, int width, int height) {
+        double scale = client.getWindow().getScaleFactor();
+        int screenWidth = client.getWindow().getFramebufferWidth();
+        int screenHeight = client.getWindow().getFramebufferHeight();
+        int left = Math.max(0, (int) Math.floor((x - 1) * scale));
+        int top = Math.max(0, (int) Math.floor((y - 1) * scale));
+        int pixelWidth = Math.max(1, Math.min(screenWidth, (int) Math.ceil((x + width + 1) * scale)) - left);
+        int pixelHeight = Math.max(1, Math.min(screenHeight, (int) Math.ceil((y + height + 1) * scale)) - top);
+        boolean moved = left != this.left || top != this.top;
+        this.left = left;
+        this.top = top;
+        if (framebuffer == null) {
+            framebuffer = new Framebuffer(pixelWidth, pixelHeight, false, MinecraftClient.IS_SYSTEM_MAC);
+            framebuffer.setClearColor(0, 0, 0, 0);
+            return true;
+        }
+        if (framebuffer.viewportWidth != pixelWidth || framebuffer.viewportHeight != pixelHeight) {
+            framebuffer.resize(pixelWidth, pixelHeight, MinecraftClient.IS_SYSTEM_MAC);
+            return true;
+        }
+        return moved;
+    }
+
+    /**
+     * Clears the buffer and redirects rendering into it. The projection is narrowed to the area of the
+     * buffer so the window can be drawn at its usual coordinates.
+     */
+    public void beginWrite() {
+        framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+        framebuffer.beginWrite(true);
+        double scale = client.getWindow().getScaleFactor();
+        RenderSystem.matrixMode(GL11.GL_PROJECTION);
+        RenderSystem.pushMatrix();
+        RenderSystem.loadIdentity();
+        RenderSystem.ortho(left / scale, (left + framebuffer.viewportWidth) / scale, (top + framebuffer.viewportHeight) / scale, top / scale, 1000, 3000);
+        RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+        blendFunc();
+    }
+
+    /**
+     * Points rendering back to the main game buffer.
+     */
+    public void endWrite() {
+        RenderSystem.matrixMode(GL11.GL_PROJECTION);
+        RenderSystem.popMatrix();
+        RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+        RenderSystem.defaultBlendFunc();
+        framebuffer.endWrite();
+        client.getFramebuffer().beginWrite(true);
+    }
+
+    /**
+     * Copies the cached contents back to where they were drawn.
+     */
+    public void draw(MatrixStack matrixStack) {
+        if (framebuffer == null) {
+            return;
+        }
+        double scale = client.getWindow().getScaleFactor();
+        float x1 = (float) (left / scale);
+        float y1 = (float) (top / scale);
+        float x2 = (float) ((left + framebuffer.viewportWidth) / scale);
+        float y2 = (float) ((top + framebuffer.viewportHeight) / scale);
+        RenderSystem.enableBlend();
+        // Everything in the buffer has already been blended against transparency, so the colors are premultiplied
+        // and the alpha is the total coverage. Blitting with ONE, ONE_MINUS_SRC_ALPHA gives what drawing directly would.
+        RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+        RenderSystem.enableTexture();
+        RenderSystem.color4f(1, 1, 1, 1);
+        RenderSystem.bindTexture(framebuffer.getColorAttachment());
+        Matrix4f matrix = matrixStack.peek().getModel();
+        Tessellator tessellator = Tessellator.getInstance();
+        BufferBuilder buffer = tessellator.getBuffer();
+        buffer.begin(GL11.GL_QUADS, VertexFormats.POSITION_TEXTURE);
+        buffer.vertex(matrix, x1, y2, 0).texture(0, 0).next();
+        buffer.vertex(matrix, x2, y2, 0).texture(1, 0).next();
+        buffer.vertex(matrix, x2, y1, 0).texture(1, 1).next();
+        buffer.vertex(matrix, x1, y1, 0).texture(0, 1).next();
+        tessellator.draw();
+        RenderSystem.defaultBlendFunc();
+    }
+
+    public void delete() {
+        if (framebuffer != null) {
+            framebuffer.delete();
+            framebuffer = null;
+        }
+    }
+
+}
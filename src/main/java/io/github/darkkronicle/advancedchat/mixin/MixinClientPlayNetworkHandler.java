@@ -0,0 +1,40 @@
+package io.github.darkkronicle.advancedchat.mixin;
+
+import io.github.darkkronicle.advancedchat.chat.PlayerListTracker;
+import io.github.darkkronicle.advancedchat.storage.ChatSnapshot;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.PlayerListEntry;
+import net.minecraft.network.packet.s2c.play.GameJoinS2CPacket;
+import net.minecraft.network.packet.s2c.play.PlayerListS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Environment(EnvType.CLIENT)
+@Mixin(ClientPlayNetworkHandler.class)
+public class MixinClientPlayNetworkHandler {
+
+    @Inject(method = "onGameJoin", at = @At("RETURN"))
+    public void onGameJoin(GameJoinS2CPacket packet, CallbackInfo ci) {
+        ChatSnapshot.getInstance().restore();
+    }
+
+    @Inject(method = "onPlayerList", at = @At("RETURN"))
+    public void onPlayerList(PlayerListS2CPacket packet, CallbackInfo ci) {
+        ClientPlayNetworkHandler handler = (ClientPlayNetworkHandler) (Object) this;
+        PlayerListTracker.getInstance().onPlayerList(handler, packet);
+        if (packet.getAction() != PlayerListS2CPacket.Action.ADD_PLAYER) {
+            return;
+        }
+        for (PlayerListS2CPacket.Entry entry : packet.getEntries()) {
+            PlayerListEntry player = handler.getPlayerListEntry(entry.getProfile().getId());
+            if (player != null) {
+                PlayerListTracker.getInstance().onPlayerAdded(player);
+            }
+        }
+    }
+
+}
@@ -4,6 +4,8 @@ import io.github.darkkronicle.advancedchat.chat.ChatHistory;
 import io.github.darkkronicle.advancedchat.config.ConfigStorage;
 import io.github.darkkronicle.advancedchat.AdvancedChat;
 import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
+import io.github.darkkronicle.advancedchat.storage.ChatArchive;
+import io.github.darkkronicle.advancedchat.storage.ChatSnapshot;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
@@ -17,8 +19,15 @@ import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 @Mixin(MinecraftClient.class)
 public class MixinMinecraftClient {
 
+    @Inject(method = "disconnect(Lnet/minecraft/client/gui/screen/Screen;)V", at = @At("HEAD"))
+    public void onDisconnectStart(Screen screen, CallbackInfo ci) {
+        // Still connected, so the server name is known
+        ChatSnapshot.getInstance().save();
+    }
+
     @Inject(method = "disconnect(Lnet/minecraft/client/gui/screen/Screen;)V", at = @At("RETURN"))
     public void onDisconnect(Screen screen, CallbackInfo ci) {
+        ChatArchive.getInstance().flush();
         if (ConfigStorage.General.CLEAR_ON_DISCONNECT.config.getBooleanValue()) {
             ChatHistory.getInstance().clear();
         }
@@ -0,0 +1,358 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import io.github.darkkronicle.advancedchat.chat.search.ChatLogQuery;
+import io.github.darkkronicle.advancedchat.chat.search.SearchSource;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.Text;
+import org.apache.logging.log4j.LogManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Random access to the archive of one server without loading it into memory.
+ *
+ * Segments are memory mapped, and every segment has an offset index (the byte position of each record)
+ * so that any row can be found without scanning. Sealed segments keep their index in a {@code .idx} file
+ * next to them, which is mapped as well. Segments that have been compacted into {@link ColdSegment}s
+ * only inflate the block a row is in. Only the rows that get requested are decoded, and only the
+ * last few of those are kept around.
+ *
+ * Index 0 is the newest message. Decoding records is safe from any thread, but the cache behind
+ * {@link #getText(int)} is only for the client thread.
+ *
+ * The mappings are only released once nothing refers to them, and while they exist the archive can't
+ * delete the files on some systems. {@link #close()} drops them when the reader isn't needed anymore.
+ */
+@Environment(EnvType.CLIENT)
+public class ArchiveReader implements SearchSource {
+
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private static final int CACHE_SIZE = 256;
+
+    private final File directory;
+
+    /**
+     * Null once closed
+     */
+    private volatile List<Segment> segments;
+
+    /**
+     * Names, sizes and modification times of the files when they were mapped, see {@link #isCurrent()}
+     */
+    private final long signature;
+
+    /**
+     * Position of the first record of each segment, oldest first
+     */
+    private final int[] starts;
+
+    private final int size;
+
+    private final Function<ArchiveRecord, Text> formatter;
+
+    private final Map<Integer, Text> rows = new LinkedHashMap<Integer, Text>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Text> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private ArchiveReader(File directory, long signature, List<Segment> segments, Function<ArchiveRecord, Text> formatter) {
+        this.directory = directory;
+        this.signature = signature;
+        this.segments = segments;
+        this.formatter = formatter;
+        this.starts = new int[segments.size()];
+        int total = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            starts[i] = total;
+            total += segments.get(i).getCount();
+        }
+        this.size = total;
+    }
+
+    /**
+     * Maps every segment in a server directory.
+     *
+     * @param directory Server directory from {@link ChatArchive#getServerDirectory()}
+     * @param formatter Turns a record into the text that gets displayed
+     */
+    public static ArchiveReader open(File directory, Function<ArchiveRecord, Text> formatter) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        List<File> files = ChatArchive.getSegments(directory);
+        long signature = getSignature(files);
+        for (File file : files) {
+            Segment segment = ColdSegment.getIndex(file) >= 0 ? ColdSegment.open(file) : MappedSegment.map(file);
+            if (segment != null && segment.getCount() > 0) {
+                segments.add(segment);
+            }
+        }
+        return new ArchiveReader(directory, signature, segments, formatter);
+    }
+
+    private static long getSignature(List<File> files) {
+        long signature = files.size();
+        for (File file : files) {
+            signature = signature * 31 + file.getName().hashCode();
+            signature = signature * 31 + file.length();
+            signature = signature * 31 + file.lastModified();
+        }
+        return signature;
+    }
+
+    /**
+     * @return True if this reader is open and the files of a directory haven't changed since it was opened
+     */
+    public boolean isCurrent(File directory) {
+        return segments != null && this.directory.equals(directory) && signature == getSignature(ChatArchive.getSegments(directory));
+    }
+
+    /**
+     * Drops the mapped files. Rows read afterwards come back empty.
+     */
+    public void close() {
+        segments = null;
+        rows.clear();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        List<Segment> segments = this.segments;
+        if (segments == null) {
+            return 0;
+        }
+        int position = size - 1 - index;
+        int segmentIndex = getSegmentIndex(position);
+        try {
+            return segments.get(segmentIndex).getTimestamp(position - starts[segmentIndex]);
+        } catch (IOException e) {
+            LogManager.getLogger().warn("[AdvancedChat] Couldn't read archived message {}", index, e);
+            return 0;
+        }
+    }
+
+    @Override
+    public Text loadText(int index, boolean full) {
+        ArchiveRecord record = getRecord(index);
+        if (record == null) {
+            return null;
+        }
+        return full ? formatter.apply(record) : record.getText();
+    }
+
+    @Override
+    public boolean test(int index, ChatLogQuery query, boolean full) {
+        ArchiveRecord record = getRecord(index);
+        if (record == null) {
+            return false;
+        }
+        if (!query.matchesOwner(record.getOwner()) || !query.matchesTabs(record.getTabs())) {
+            return false;
+        }
+        if (!query.hasTextTerms()) {
+            return true;
+        }
+        // Parsing the JSON is the expensive part, so it's left until everything else passed
+        Text text = full ? formatter.apply(record) : record.getText();
+        return query.matchesText(text.getString());
+    }
+
+    /**
+     * Gets the displayed text of a row, decoding it if it isn't cached.
+     *
+     * @param index Row, 0 being the newest
+     * @return Text or null if the record couldn't be read
+     */
+    @Override
+    public Text getText(int index) {
+        Text text = rows.get(index);
+        if (text == null) {
+            ArchiveRecord record = getRecord(index);
+            if (record == null) {
+                return null;
+            }
+            text = formatter.apply(record);
+            rows.put(index, text);
+        }
+        return text;
+    }
+
+    /**
+     * Decodes a record. Not cached.
+     *
+     * @param index Row, 0 being the newest
+     * @return Record or null if it couldn't be read
+     */
+    public ArchiveRecord getRecord(int index) {
+        List<Segment> segments = this.segments;
+        if (segments == null || index < 0 || index >= size) {
+            return null;
+        }
+        int position = size - 1 - index;
+        int segmentIndex = getSegmentIndex(position);
+        Segment segment = segments.get(segmentIndex);
+        try {
+            return ArchiveRecord.decode(segment.read(position - starts[segmentIndex]));
+        } catch (IOException e) {
+            LogManager.getLogger().warn("[AdvancedChat] Couldn't read archived message {}", index, e);
+            return null;
+        }
+    }
+
+    private int getSegmentIndex(int position) {
+        int segmentIndex = Arrays.binarySearch(starts, position);
+        if (segmentIndex < 0) {
+            segmentIndex = -segmentIndex - 2;
+        }
+        // Empty segments are skipped when opening, so starts are strictly increasing
+        return segmentIndex;
+    }
+
+    /**
+     * Records of one segment file, by position in the file.
+     */
+    interface Segment {
+
+        int getCount();
+
+        byte[] read(int record) throws IOException;
+
+        long getTimestamp(int record) throws IOException;
+
+    }
+
+    /**
+     * A segment that isn't compressed, read straight from the mapped file.
+     */
+    private static class MappedSegment implements Segment {
+
+        private final ByteBuffer data;
+        private final IntBuffer offsets;
+        private final int count;
+
+        private MappedSegment(ByteBuffer data, IntBuffer offsets) {
+            this.data = data;
+            this.offsets = offsets;
+            this.count = offsets.limit();
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public byte[] read(int record) {
+            int offset = offsets.get(record);
+            int length = data.getInt(offset);
+            byte[] payload = new byte[length];
+            ByteBuffer view = data.duplicate();
+            view.position(offset + 4);
+            view.get(payload);
+            return payload;
+        }
+
+        @Override
+        public long getTimestamp(int record) {
+            return data.getLong(offsets.get(record) + 4 + ArchiveRecord.TIMESTAMP_OFFSET);
+        }
+
+        private static MappedSegment map(File file) throws IOException {
+            MappedByteBuffer data;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long length = channel.size();
+                if (length < ArchiveSegment.HEADER_SIZE || length > Integer.MAX_VALUE) {
+                    return null;
+                }
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+            if (data.getInt(0) != ArchiveSegment.MAGIC || data.getInt(4) != ArchiveSegment.VERSION) {
+                return null;
+            }
+            File indexFile = new File(file.getParentFile(), file.getName().substring(0, file.getName().length() - ArchiveSegment.EXTENSION.length()) + INDEX_EXTENSION);
+            int limit = data.limit();
+            boolean sealed = limit >= 20 && data.getInt(limit - 12) == -1;
+            if (sealed) {
+                int count = data.getInt(limit - 8);
+                if (indexFile.length() == (long) count * 4) {
+                    return new MappedSegment(data, mapIndex(indexFile));
+                }
+            }
+            int[] offsets = buildIndex(data);
+            if (sealed) {
+                writeIndex(indexFile, offsets);
+                return new MappedSegment(data, mapIndex(indexFile));
+            }
+            // The segment that is still being written to is small enough to index on the heap
+            return new MappedSegment(data, IntBuffer.wrap(offsets));
+        }
+
+        /**
+         * Walks every intact record and stores where it starts.
+         */
+        private static int[] buildIndex(ByteBuffer data) {
+            int[] offsets = new int[64];
+            int count = 0;
+            int position = ArchiveSegment.HEADER_SIZE;
+            int limit = data.limit();
+            CRC32 checksum = new CRC32();
+            while (position + 4 <= limit) {
+                int length = data.getInt(position);
+                if (length <= 0 || (long) position + 8 + length > limit) {
+                    break;
+                }
+                ByteBuffer payload = data.duplicate();
+                payload.position(position + 4).limit(position + 4 + length);
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != data.getInt(position + 4 + length)) {
+                    break;
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = position;
+                position += 8 + length;
+            }
+            return Arrays.copyOf(offsets, count);
+        }
+
+        private static void writeIndex(File file, int[] offsets) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(offsets.length * 4);
+            buffer.asIntBuffer().put(offsets);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        private static IntBuffer mapIndex(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import io.github.darkkronicle.advancedchat.AdvancedChat;
+import io.github.darkkronicle.advancedchat.chat.ChatMessage;
+import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
+import lombok.Value;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.LiteralText;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A single message as it is stored in the archive.
+ *
+ * The text is kept as serialized JSON and only parsed when it's needed.
+ */
+@Environment(EnvType.CLIENT)
+@Value
+public class ArchiveRecord {
+
+    private static final int VERSION = 1;
+
+    /**
+     * Where the timestamp sits in an encoded record, so it can be read without decoding the rest
+     */
+    public static final int TIMESTAMP_OFFSET = 1;
+
+    /**
+     * Epoch milliseconds when the message was received
+     */
+    long timestamp;
+
+    /**
+     * The message serialized with {@link Text.Serializer}
+     */
+    String json;
+
+    /**
+     * Name of the player who sent the message, or null
+     */
+    String owner;
+
+    /**
+     * Names of the tabs the message went into
+     */
+    String[] tabs;
+
+    public static ArchiveRecord of(ChatMessage message, long timestamp) {
+        String owner = message.getOwner() == null ? null : message.getOwner().getName();
+        List<AbstractChatTab> messageTabs = AdvancedChat.chatTab.getTabs(message.getTabs());
+        String[] tabs = new String[messageTabs.size()];
+        for (int i = 0; i < tabs.length; i++) {
+            tabs[i] = messageTabs.get(i).getName();
+        }
+        return new ArchiveRecord(timestamp, Text.Serializer.toJson(toVanilla(message.getOriginalText())), owner, tabs);
+    }
+
+    public Text getText() {
+        return Text.Serializer.fromJson(json);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(timestamp);
+            writeString(out, json);
+            out.writeBoolean(owner != null);
+            if (owner != null) {
+                writeString(out, owner);
+            }
+            out.writeShort(tabs.length);
+            for (String tab : tabs) {
+                writeString(out, tab);
+            }
+        } catch (IOException e) {
+            // Writing to memory won't fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ArchiveRecord decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unknown archive record version " + version);
+            }
+            long timestamp = in.readLong();
+            String json = readString(in);
+            String owner = in.readBoolean() ? readString(in) : null;
+            String[] tabs = new String[in.readUnsignedShort()];
+            for (int i = 0; i < tabs.length; i++) {
+                tabs[i] = readString(in);
+            }
+            return new ArchiveRecord(timestamp, json, owner, tabs);
+        }
+    }
+
+    /**
+     * Rebuilds any text (including {@link io.github.darkkronicle.advancedchat.util.FluidText}) out of
+     * vanilla components so that it can be serialized.
+     */
+    public static Text toVanilla(Text text) {
+        MutableText root = new LiteralText("");
+        text.visit((style, string) -> {
+            root.append(new LiteralText(string).setStyle(style));
+            return Optional.empty();
+        }, Style.EMPTY);
+        return root;
+    }
+
+    static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,250 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import lombok.Getter;
+import lombok.Value;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One append-only file of the archive.
+ *
+ * Layout:
+ * <pre>
+ * header:  int magic, int version
+ * record:  int length, byte[length] payload, int crc32(payload)
+ * footer:  int -1, int record count, int crc32(all payloads)
+ * </pre>
+ * The footer is only written once a segment is full. An unsealed segment is the one still being
+ * written to, and anything after the last record with a valid checksum (a write cut off by a crash)
+ * is truncated when it is opened again.
+ */
+@Environment(EnvType.CLIENT)
+public class ArchiveSegment implements Closeable {
+
+    public static final int MAGIC = 0x41434152;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final String EXTENSION = ".seg";
+
+    private static final int SEALED = -1;
+
+    @Getter
+    private final File file;
+
+    @Getter
+    private final int index;
+
+    private final FileChannel channel;
+
+    private final CRC32 checksum;
+
+    @Getter
+    private int recordCount;
+
+    @Getter
+    private long size;
+
+    @Getter
+    private boolean sealed;
+
+    private ArchiveSegment(File file, int index, FileChannel channel, CRC32 checksum, int recordCount, long size, boolean sealed) {
+        this.file = file;
+        this.index = index;
+        this.channel = channel;
+        this.checksum = checksum;
+        this.recordCount = recordCount;
+        this.size = size;
+        this.sealed = sealed;
+    }
+
+    public static File getFile(File directory, int index) {
+        return new File(directory, String.format("%08d", index) + EXTENSION);
+    }
+
+    /**
+     * Gets the index of a segment file from its name
+     *
+     * @return Index or -1 if it isn't a segment
+     */
+    public static int getIndex(File file) {
+        String name = file.getName();
+        if (!name.endsWith(EXTENSION)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a segment for appending, creating it if it doesn't exist and repairing a torn tail.
+     */
+    public static ArchiveSegment open(File directory, int index) throws IOException {
+        File file = getFile(directory, index);
+        CRC32 checksum = new CRC32();
+        ScanResult result = file.exists() ? scan(file, checksum, null) : null;
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (result == null || result.getEnd() < HEADER_SIZE) {
+            // New or unreadable file. Start over.
+            channel.truncate(0);
+            channel.position(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            checksum.reset();
+            return new ArchiveSegment(file, index, channel, checksum, 0, HEADER_SIZE, false);
+        }
+        if (!result.isSealed() && channel.size() > result.getEnd()) {
+            channel.truncate(result.getEnd());
+        }
+        channel.position(result.getEnd());
+        return new ArchiveSegment(file, index, channel, checksum, result.getCount(), result.getEnd(), result.isSealed());
+    }
+
+    /**
+     * Writes all payloads in one go. Doesn't force them to disk.
+     */
+    public void append(List<byte[]> payloads) throws IOException {
+        if (sealed) {
+            throw new IOException("Segment " + file + " is sealed");
+        }
+        int total = 0;
+        for (byte[] payload : payloads) {
+            total += payload.length + 8;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 record = new CRC32();
+        for (byte[] payload : payloads) {
+            record.reset();
+            record.update(payload);
+            checksum.update(payload);
+            buffer.putInt(payload.length).put(payload).putInt((int) record.getValue());
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size += total;
+        recordCount += payloads.size();
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Writes the footer. Nothing can be appended afterwards.
+     */
+    public void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(12);
+        footer.putInt(SEALED).putInt(recordCount).putInt((int) checksum.getValue()).flip();
+        while (footer.hasRemaining()) {
+            channel.write(footer);
+        }
+        channel.force(false);
+        size += 12;
+        sealed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads every intact record of a segment file.
+     *
+     * @param file Segment to read
+     * @param checksum Checksum that gets updated with every payload read, or null
+     * @param consumer Gets the file offset and payload of each record, or null
+     */
+    public static ScanResult scan(File file, CRC32 checksum, RecordConsumer consumer) throws IOException {
+        if (checksum == null) {
+            checksum = new CRC32();
+        }
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (length < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return new ScanResult(0, 0, false, false);
+            }
+            CRC32 record = new CRC32();
+            long offset = HEADER_SIZE;
+            int count = 0;
+            while (offset + 4 <= length) {
+                int size = in.readInt();
+                if (size == SEALED) {
+                    if (offset + 12 > length) {
+                        break;
+                    }
+                    int footerCount = in.readInt();
+                    int footerChecksum = in.readInt();
+                    boolean intact = footerCount == count && footerChecksum == (int) checksum.getValue();
+                    return new ScanResult(offset, count, true, intact);
+                }
+                if (size <= 0 || offset + 8 + size > length) {
+                    break;
+                }
+                byte[] payload = new byte[size];
+                in.readFully(payload);
+                int expected = in.readInt();
+                record.reset();
+                record.update(payload);
+                if ((int) record.getValue() != expected) {
+                    break;
+                }
+                checksum.update(payload);
+                if (consumer != null) {
+                    consumer.accept(offset, payload);
+                }
+                offset += 8 + size;
+                count++;
+            }
+            return new ScanResult(offset, count, false, false);
+        }
+    }
+
+    public interface RecordConsumer {
+
+        void accept(long offset, byte[] payload) throws IOException;
+
+    }
+
+    @Value
+    public static class ScanResult {
+
+        /**
+         * Where the last intact record ends
+         */
+        long end;
+
+        int count;
+
+        boolean sealed;
+
+        /**
+         * If the segment is sealed and the footer checksum matches
+         */
+        boolean intact;
+
+    }
+
+}
@@ -0,0 +1,315 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import fi.dy.masa.malilib.util.FileUtils;
+import io.github.darkkronicle.advancedchat.chat.ChatLogMessage;
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent storage for every message that goes into the chat log.
+ *
+ * Each server gets its own directory of {@link ArchiveSegment}s. Messages are encoded on the client
+ * thread and handed to a background writer that commits everything that queued up since the last
+ * write with a single write and fsync.
+ *
+ * Once a segment is sealed the writer compacts it into a {@link ColdSegment}, which is block
+ * compressed and a fraction of the size, and deletes the original.
+ */
+@Environment(EnvType.CLIENT)
+public class ChatArchive {
+
+    private final static ChatArchive INSTANCE = new ChatArchive();
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Segments get sealed and a new one started once they reach this size.
+     */
+    public static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final int MAX_BATCH = 512;
+
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    private volatile Thread writer = null;
+
+    // Only touched by the writer thread
+    private File currentDirectory = null;
+    private ArchiveSegment segment = null;
+
+    public static ChatArchive getInstance() {
+        return INSTANCE;
+    }
+
+    private ChatArchive() {
+
+    }
+
+    public static File getRootDirectory() {
+        return FileUtils.getConfigDirectory().toPath().resolve("advancedchat").resolve("archive").toFile();
+    }
+
+    /**
+     * Gets the archive directory for the world or server the client is currently on.
+     */
+    public static File getServerDirectory() {
+        return new File(getRootDirectory(), getServerName());
+    }
+
+    public static String getServerName() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        String name;
+        if (client.isIntegratedServerRunning() && client.getServer() != null) {
+            name = "singleplayer-" + client.getServer().getSaveProperties().getLevelName();
+        } else {
+            ServerInfo info = client.getCurrentServerEntry();
+            name = info == null ? "unknown" : info.address;
+        }
+        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * Lists the segments of a server directory, oldest first. These are either {@link ArchiveSegment}s
+     * or {@link ColdSegment}s. If a segment exists in both forms only the cold one is listed.
+     */
+    public static List<File> getSegments(File directory) {
+        List<File> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            int index = ArchiveSegment.getIndex(file);
+            if (index >= 0 && !ColdSegment.getFile(directory, index).exists()) {
+                segments.add(file);
+            } else if (ColdSegment.getIndex(file) >= 0) {
+                segments.add(file);
+            }
+        }
+        segments.sort((o1, o2) -> Integer.compare(getIndex(o1), getIndex(o2)));
+        return segments;
+    }
+
+    /**
+     * Gets the index of an archive file, compacted or not
+     *
+     * @return Index or -1 if it isn't a segment
+     */
+    public static int getIndex(File file) {
+        int index = ArchiveSegment.getIndex(file);
+        return index >= 0 ? index : ColdSegment.getIndex(file);
+    }
+
+    /**
+     * Queues a message to be written. Does nothing if the archive is disabled.
+     */
+    public void append(ChatLogMessage message) {
+        if (!ConfigStorage.ChatLog.ARCHIVE.config.getBooleanValue()) {
+            return;
+        }
+        byte[] payload = ArchiveRecord.of(message, message.getTimestamp()).encode();
+        queue.add(new Entry(getServerDirectory(), payload, null));
+        start();
+    }
+
+    /**
+     * Queues writing everything before it and closing the open segment, without waiting for it.
+     */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        queue.add(new Entry(null, null, null));
+    }
+
+    /**
+     * Writes everything that is queued and closes the open segment. Waits a short while for the
+     * writer to finish, so it's only for when the game is stopping.
+     */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        queue.add(new Entry(null, null, latch));
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(this::run, "AdvancedChat Archive");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            write(batch);
+            batch.clear();
+        }
+        closeSegment();
+    }
+
+    private void write(List<Entry> batch) {
+        List<byte[]> pending = new ArrayList<>();
+        long pendingSize = 0;
+        for (Entry entry : batch) {
+            try {
+                if (entry.payload == null) {
+                    commit(pending);
+                    pending.clear();
+                    pendingSize = 0;
+                    closeSegment();
+                    if (entry.done != null) {
+                        entry.done.countDown();
+                    }
+                    continue;
+                }
+                if (!entry.directory.equals(currentDirectory)) {
+                    commit(pending);
+                    pending.clear();
+                    pendingSize = 0;
+                    closeSegment();
+                    openSegment(entry.directory);
+                }
+                if (segment.getSize() + pendingSize + entry.payload.length + 8 > SEGMENT_SIZE && segment.getRecordCount() + pending.size() > 0) {
+                    commit(pending);
+                    pending.clear();
+                    pendingSize = 0;
+                    segment.seal();
+                    segment.close();
+                    compact(segment.getFile());
+                    segment = ArchiveSegment.open(currentDirectory, segment.getIndex() + 1);
+                }
+                pending.add(entry.payload);
+                pendingSize += entry.payload.length + 8;
+            } catch (IOException e) {
+                LOGGER.error("[AdvancedChat] Couldn't write to chat archive", e);
+                pending.clear();
+                pendingSize = 0;
+                closeSegment();
+            }
+        }
+        try {
+            commit(pending);
+        } catch (IOException e) {
+            LOGGER.error("[AdvancedChat] Couldn't write to chat archive", e);
+            closeSegment();
+        }
+    }
+
+    private void commit(List<byte[]> payloads) throws IOException {
+        if (payloads.isEmpty() || segment == null) {
+            return;
+        }
+        segment.append(payloads);
+        segment.force();
+    }
+
+    private void openSegment(File directory) throws IOException {
+        directory.mkdirs();
+        currentDirectory = directory;
+        List<File> segments = getSegments(directory);
+        // Sealed segments left over from a crash or an older version. Only the newest can still be open.
+        File newest = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (ArchiveSegment.getIndex(file) >= 0 && !file.equals(newest)) {
+                    compact(file);
+                }
+            }
+        }
+        segments = getSegments(directory);
+        if (segments.isEmpty()) {
+            segment = ArchiveSegment.open(directory, 0);
+            return;
+        }
+        File last = segments.get(segments.size() - 1);
+        int index = getIndex(last);
+        if (ColdSegment.getIndex(last) >= 0) {
+            segment = ArchiveSegment.open(directory, index + 1);
+            return;
+        }
+        segment = ArchiveSegment.open(directory, index);
+        if (segment.isSealed()) {
+            segment.close();
+            compact(segment.getFile());
+            segment = ArchiveSegment.open(directory, index + 1);
+        }
+    }
+
+    /**
+     * Compresses a sealed segment and removes it. Segments that can't be compacted are left alone.
+     */
+    private void compact(File file) {
+        File directory = file.getParentFile();
+        int index = ArchiveSegment.getIndex(file);
+        File offsets = new File(directory, file.getName().substring(0, file.getName().length() - ArchiveSegment.EXTENSION.length()) + ArchiveReader.INDEX_EXTENSION);
+        try {
+            if (!ColdSegment.getFile(directory, index).exists() && ColdSegment.compact(file) == null) {
+                return;
+            }
+            // Can fail while a reader still has the file mapped, in which case it's tried again later
+            if (file.delete()) {
+                offsets.delete();
+            }
+        } catch (IOException e) {
+            LOGGER.error("[AdvancedChat] Couldn't compact chat archive segment {}", file, e);
+        }
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOGGER.error("[AdvancedChat] Couldn't close chat archive segment", e);
+            }
+        }
+        segment = null;
+        currentDirectory = null;
+    }
+
+    private static class Entry {
+
+        private final File directory;
+        private final byte[] payload;
+        private final CountDownLatch done;
+
+        private Entry(File directory, byte[] payload, CountDownLatch done) {
+            this.directory = directory;
+            this.payload = payload;
+            this.done = done;
+        }
+
+    }
+
+}
@@ -0,0 +1,258 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import fi.dy.masa.malilib.util.FileUtils;
+import io.github.darkkronicle.advancedchat.chat.search.SearchSource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import org.apache.logging.log4j.LogManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes chat log rows to a file on a background thread.
+ *
+ * Rows are read from the {@link SearchSource} one at a time and written straight through a buffered
+ * writer, so nothing but the row positions is ever held in memory. Output is oldest first.
+ */
+@Environment(EnvType.CLIENT)
+public class ChatLogExporter {
+
+    private final static ChatLogExporter INSTANCE = new ChatLogExporter();
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private static final DateTimeFormatter ROW_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Gson GSON = new Gson();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdvancedChat Export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @AllArgsConstructor
+    public enum Format {
+        TEXT(".txt"),
+        JSON(".json"),
+        HTML(".html"),
+        ;
+
+        @Getter
+        private final String extension;
+    }
+
+    @Getter
+    private volatile boolean running = false;
+
+    @Getter
+    private volatile int written = 0;
+
+    @Getter
+    private volatile int total = 0;
+
+    /**
+     * What happened to the last export, or null
+     */
+    @Getter
+    private volatile String status = null;
+
+    public static ChatLogExporter getInstance() {
+        return INSTANCE;
+    }
+
+    private ChatLogExporter() {
+
+    }
+
+    public static File getDirectory() {
+        return FileUtils.getConfigDirectory().toPath().resolve("advancedchat").resolve("exports").toFile();
+    }
+
+    public float getProgress() {
+        return total == 0 ? 1 : (float) written / total;
+    }
+
+    /**
+     * Starts exporting. Does nothing if an export is already running.
+     *
+     * @param source Rows to read. Has to stay the same while exporting.
+     * @param rows Rows of the source to export in ascending order, or null for the first count rows
+     * @param count How many rows to export
+     * @param format File format
+     * @return If the export started
+     */
+    public synchronized boolean export(SearchSource source, int[] rows, int count, Format format) {
+        if (running) {
+            return false;
+        }
+        running = true;
+        written = 0;
+        total = count;
+        status = null;
+        File file = new File(getDirectory(), "chatlog-" + LocalDateTime.now().format(FILE_TIME) + format.getExtension());
+        executor.execute(() -> {
+            try {
+                write(file, source, rows, count, format);
+                status = "Exported to " + file.getName();
+            } catch (IOException | RuntimeException e) {
+                LogManager.getLogger().error("[AdvancedChat] Couldn't export chat log", e);
+                status = "Export failed: " + e.getMessage();
+            } finally {
+                running = false;
+            }
+        });
+        return true;
+    }
+
+    private void write(File file, SearchSource source, int[] rows, int count, Format format) throws IOException {
+        file.getParentFile().mkdirs();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            JsonWriter json = null;
+            if (format == Format.JSON) {
+                json = new JsonWriter(writer);
+                json.setIndent("  ");
+                json.beginArray();
+            } else if (format == Format.HTML) {
+                writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Chat Log</title>\n");
+                writer.write("<style>body{background:#1e1e1e;color:#fff;font-family:monospace}.time{color:#808080}div{white-space:pre-wrap}</style>\n");
+                writer.write("</head>\n<body>\n");
+            }
+            // Rows are newest first
+            for (int i = count - 1; i >= 0; i--) {
+                int row = rows == null ? i : rows[i];
+                Text text = source.loadText(row, false);
+                if (text != null) {
+                    long timestamp = source.getTimestamp(row);
+                    switch (format) {
+                        case TEXT:
+                            writer.write("[" + formatTime(timestamp) + "] " + text.getString() + "\n");
+                            break;
+                        case JSON:
+                            json.beginObject();
+                            json.name("time").value(timestamp);
+                            json.name("text");
+                            GSON.toJson(Text.Serializer.toJsonTree(ArchiveRecord.toVanilla(text)), json);
+                            json.endObject();
+                            break;
+                        case HTML:
+                            writeHtml(writer, timestamp, text);
+                            break;
+                    }
+                }
+                written = count - i;
+            }
+            if (json != null) {
+                json.endArray();
+                json.flush();
+            } else if (format == Format.HTML) {
+                writer.write("</body>\n</html>\n");
+            }
+        }
+    }
+
+    private static String formatTime(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).format(ROW_TIME);
+    }
+
+    private static void writeHtml(Writer writer, long timestamp, Text text) throws IOException {
+        StringBuilder builder = new StringBuilder("<div><span class=\"time\">[").append(formatTime(timestamp)).append("]</span> ");
+        text.visit((style, string) -> {
+            appendHtml(builder, style, string);
+            return Optional.empty();
+        }, Style.EMPTY);
+        builder.append("</div>\n");
+        writer.write(builder.toString());
+    }
+
+    /**
+     * Only http and https links are written as links, servers can send anything as a click url
+     */
+    private static boolean isWebLink(String url) {
+        try {
+            String scheme = new URI(url.trim()).getScheme();
+            return scheme != null && (scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"));
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static void appendHtml(StringBuilder builder, Style style, String string) {
+        ClickEvent click = style.getClickEvent();
+        boolean link = click != null && click.getAction() == ClickEvent.Action.OPEN_URL && isWebLink(click.getValue());
+        if (link) {
+            builder.append("<a href=\"").append(escape(click.getValue())).append("\">");
+        }
+        builder.append("<span style=\"");
+        if (style.getColor() != null) {
+            builder.append(String.format("color:#%06x;", style.getColor().getRgb() & 0xFFFFFF));
+        }
+        if (style.isBold()) {
+            builder.append("font-weight:bold;");
+        }
+        if (style.isItalic()) {
+            builder.append("font-style:italic;");
+        }
+        if (style.isUnderlined() || style.isStrikethrough()) {
+            builder.append("text-decoration:");
+            if (style.isUnderlined()) {
+                builder.append(" underline");
+            }
+            if (style.isStrikethrough()) {
+                builder.append(" line-through");
+            }
+            builder.append(';');
+        }
+        builder.append("\">").append(escape(string)).append("</span>");
+        if (link) {
+            builder.append("</a>");
+        }
+    }
+
+    private static String escape(String string) {
+        StringBuilder builder = new StringBuilder(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,317 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import fi.dy.masa.malilib.util.FileUtils;
+import io.github.darkkronicle.advancedchat.AdvancedChat;
+import io.github.darkkronicle.advancedchat.chat.ChatHistory;
+import io.github.darkkronicle.advancedchat.chat.ChatMessage;
+import io.github.darkkronicle.advancedchat.chat.MessageOwner;
+import io.github.darkkronicle.advancedchat.chat.tabs.AbstractChatTab;
+import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.gui.AdvancedChatHud;
+import io.github.darkkronicle.advancedchat.util.ColorUtil;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.PlayerListEntry;
+import net.minecraft.text.Text;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the recent chat of each server in a small file so that it can be brought back after
+ * reconnecting or restarting the game.
+ *
+ * The chat history is captured on the client thread and written on a background thread when
+ * disconnecting and every few minutes. Messages keep changing after they're added (stacks, tabs and
+ * the text when filters run again), so the values are copied into {@link Record}s while capturing.
+ * Texts are replaced rather than changed, so the copy can keep the same text objects.
+ * Restoring reads the file on joining if the chat is empty. Text is stored with {@link TextCodec}
+ * instead of JSON, tab masks are stored along with the tab names and mapped to the current tabs
+ * instead of being matched again, and lines are only wrapped once they're drawn.
+ *
+ * Layout (gzipped):
+ * <pre>
+ * header:   int magic, int version
+ * tabs:     int count, string[count] names by id
+ * messages: int count, then newest first:
+ *           long timestamp, long time of day (nanos), int stacks, boolean background [int color],
+ *           boolean owner [string name], long tab mask,
+ *           display text, boolean same, [original text]
+ * </pre>
+ */
+@Environment(EnvType.CLIENT)
+public class ChatSnapshot {
+
+    private final static ChatSnapshot INSTANCE = new ChatSnapshot();
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MAGIC = 0x41435348;
+    private static final int VERSION = 2;
+
+    public static final String EXTENSION = ".snap";
+
+    /**
+     * Ticks between saves while connected
+     */
+    private static final int SAVE_INTERVAL = 20 * 60 * 5;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdvancedChat Snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int ticks = 0;
+
+    public static ChatSnapshot getInstance() {
+        return INSTANCE;
+    }
+
+    private ChatSnapshot() {
+
+    }
+
+    public static File getDirectory() {
+        return FileUtils.getConfigDirectory().toPath().resolve("advancedchat").resolve("snapshots").toFile();
+    }
+
+    public static File getFile(String server) {
+        return new File(getDirectory(), server + EXTENSION);
+    }
+
+    private static boolean isEnabled() {
+        return ConfigStorage.ChatLog.RESTORE.config.getBooleanValue();
+    }
+
+    /**
+     * Saves every now and then while in a world.
+     */
+    public void tick(MinecraftClient client) {
+        if (client.world == null || !isEnabled()) {
+            ticks = 0;
+            return;
+        }
+        ticks++;
+        if (ticks >= SAVE_INTERVAL) {
+            ticks = 0;
+            save();
+        }
+    }
+
+    /**
+     * Captures the chat history of the current server and writes it in the background.
+     */
+    public void save() {
+        if (!isEnabled() || MinecraftClient.getInstance().world == null) {
+            return;
+        }
+        List<ChatMessage> messages = ChatHistory.getInstance().getMessages();
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<Record> copy = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            copy.add(new Record(message));
+        }
+        List<AbstractChatTab> tabs = AdvancedChat.chatTab.getAllChatTabs();
+        String[] names = new String[tabs.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = tabs.get(i).getName();
+        }
+        File file = getFile(ChatArchive.getServerName());
+        executor.execute(() -> {
+            try {
+                write(file, names, copy);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("[AdvancedChat] Couldn't save chat snapshot", e);
+            }
+        });
+    }
+
+    /**
+     * Waits a short while for pending saves to be written.
+     */
+    public void close() {
+        try {
+            executor.submit(() -> {}).get(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.warn("[AdvancedChat] Chat snapshot didn't finish saving", e);
+        }
+    }
+
+    /**
+     * Loads the chat history of the current server if nothing is in chat yet.
+     */
+    public void restore() {
+        if (!isEnabled() || !ChatHistory.getInstance().getMessages().isEmpty()) {
+            return;
+        }
+        File file = getFile(ChatArchive.getServerName());
+        if (!file.exists()) {
+            return;
+        }
+        List<ChatMessage> messages;
+        long start = System.nanoTime();
+        try {
+            messages = read(file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("[AdvancedChat] Couldn't read chat snapshot", e);
+            return;
+        }
+        ChatHistory.getInstance().restore(messages);
+        AdvancedChat.getChatLogData().restore(messages);
+        AdvancedChatHud.getInstance().refresh();
+        LOGGER.info("[AdvancedChat] Restored {} messages in {} ms", messages.size(), (System.nanoTime() - start) / 1000000);
+    }
+
+    private void write(File file, String[] tabs, List<Record> messages) throws IOException {
+        file.getParentFile().mkdirs();
+        File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporary))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tabs.length);
+            for (String tab : tabs) {
+                ArchiveRecord.writeString(out, tab);
+            }
+            out.writeInt(messages.size());
+            for (Record message : messages) {
+                out.writeLong(message.timestamp);
+                out.writeLong(message.time);
+                out.writeInt(message.stacks);
+                out.writeBoolean(message.background != null);
+                if (message.background != null) {
+                    out.writeInt(message.background);
+                }
+                out.writeBoolean(message.owner != null);
+                if (message.owner != null) {
+                    ArchiveRecord.writeString(out, message.owner);
+                }
+                out.writeLong(message.tabs);
+                TextCodec.write(out, message.display);
+                boolean same = message.original == message.display;
+                out.writeBoolean(same);
+                if (!same) {
+                    TextCodec.write(out, message.original);
+                }
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<ChatMessage> read(File file) throws IOException {
+        MinecraftClient client = MinecraftClient.getInstance();
+        ClientPlayNetworkHandler handler = client.getNetworkHandler();
+        int tick = client.inGameHud.getTicks();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a chat snapshot");
+            }
+            Map<String, Integer> byName = new HashMap<>();
+            for (AbstractChatTab tab : AdvancedChat.chatTab.getAllChatTabs()) {
+                byName.putIfAbsent(tab.getName(), tab.getId());
+            }
+            int[] tabs = new int[in.readInt()];
+            for (int i = 0; i < tabs.length; i++) {
+                // Tabs that were deleted since are dropped
+                tabs[i] = byName.getOrDefault(ArchiveRecord.readString(in), -1);
+            }
+            int count = in.readInt();
+            List<ChatMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long timestamp = in.readLong();
+                LocalTime time = LocalTime.ofNanoOfDay(in.readLong());
+                int stacks = in.readInt();
+                ColorUtil.SimpleColor background = in.readBoolean() ? new ColorUtil.SimpleColor(in.readInt()) : null;
+                MessageOwner owner = null;
+                if (in.readBoolean()) {
+                    String name = ArchiveRecord.readString(in);
+                    PlayerListEntry entry = handler == null ? null : handler.getPlayerListEntry(name);
+                    owner = new MessageOwner(name, entry);
+                }
+                long messageTabs = 0;
+                for (long saved = in.readLong(); saved != 0; saved &= saved - 1) {
+                    int id = Long.numberOfTrailingZeros(saved);
+                    if (id < tabs.length && tabs[id] >= 0) {
+                        messageTabs |= 1L << tabs[id];
+                    }
+                }
+                if (messageTabs == 0) {
+                    messageTabs = AdvancedChat.chatTab.getMask();
+                }
+                Text display = TextCodec.read(in);
+                Text original = in.readBoolean() ? display : TextCodec.read(in);
+                ChatMessage message = ChatMessage.builder()
+                        .displayText(display)
+                        .originalText(original)
+                        .owner(owner)
+                        .id(0)
+                        .width(0)
+                        .creationTick(tick)
+                        .time(time)
+                        .background(background)
+                        .tabs(messageTabs)
+                        .build();
+                message.setTimestamp(timestamp);
+                message.setStacks(stacks);
+                messages.add(message);
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Values of a message at the time it was captured
+     */
+    private static class Record {
+
+        private final long timestamp;
+        private final long time;
+        private final int stacks;
+        private final Integer background;
+        private final String owner;
+        private final long tabs;
+        private final Text display;
+        private final Text original;
+
+        private Record(ChatMessage message) {
+            this.timestamp = message.getTimestamp();
+            this.time = message.getTime() == null ? 0 : message.getTime().toNanoOfDay();
+            this.stacks = message.getStacks();
+            this.background = message.getBackground() == null ? null : message.getBackground().color();
+            this.owner = message.getOwner() == null ? null : message.getOwner().getName();
+            this.tabs = message.getTabs();
+            this.display = message.getDisplayText();
+            this.original = message.getOriginalText();
+        }
+
+    }
+
+}
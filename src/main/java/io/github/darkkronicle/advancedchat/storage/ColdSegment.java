@@ -0,0 +1,326 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import lombok.Getter;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A sealed {@link ArchiveSegment} compacted into deflate compressed blocks.
+ *
+ * Layout:
+ * <pre>
+ * header:  int magic, int version
+ * block:   deflated records (int length, byte[length] payload), about {@link #BLOCK_SIZE} before compressing
+ * index:   per block: long offset, int compressed length, int uncompressed length, int first record
+ * footer:  long index offset, int block count, int record count, int crc32(index)
+ * </pre>
+ * Reading a record only inflates the block it's in, and the last few blocks read are kept around so
+ * reading neighbouring records doesn't inflate again.
+ */
+@Environment(EnvType.CLIENT)
+public class ColdSegment implements ArchiveReader.Segment {
+
+    public static final int MAGIC = 0x41434343;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".cold";
+
+    /**
+     * Uncompressed size a block is filled to
+     */
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int ENTRY_SIZE = 20;
+    private static final int FOOTER_SIZE = 20;
+    private static final int CACHE_SLOTS = 8;
+
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final int[] compressedSizes;
+    private final int[] uncompressedSizes;
+    private final int[] firstRecords;
+
+    @Getter
+    private final int count;
+
+    private final AtomicReferenceArray<Block> cache = new AtomicReferenceArray<>(CACHE_SLOTS);
+
+    private ColdSegment(ByteBuffer data, int[] offsets, int[] compressedSizes, int[] uncompressedSizes, int[] firstRecords, int count) {
+        this.data = data;
+        this.offsets = offsets;
+        this.compressedSizes = compressedSizes;
+        this.uncompressedSizes = uncompressedSizes;
+        this.firstRecords = firstRecords;
+        this.count = count;
+    }
+
+    public static File getFile(File directory, int index) {
+        return new File(directory, String.format("%08d", index) + EXTENSION);
+    }
+
+    /**
+     * Gets the index of a cold segment file from its name
+     *
+     * @return Index or -1 if it isn't a cold segment
+     */
+    public static int getIndex(File file) {
+        String name = file.getName();
+        if (!name.endsWith(EXTENSION)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Compresses a sealed segment into a cold segment next to it. The cold file is written under a
+     * temporary name and moved into place, so it either exists complete or not at all. The original
+     * is left for the caller to delete.
+     *
+     * @param segment Segment file
+     * @return The cold file, or null if the segment isn't sealed and intact
+     */
+    public static File compact(File segment) throws IOException {
+        File target = getFile(segment.getParentFile(), ArchiveSegment.getIndex(segment));
+        File temporary = new File(target.getParentFile(), target.getName() + ".tmp");
+        ArchiveSegment.ScanResult result;
+        try (BlockWriter writer = new BlockWriter(temporary)) {
+            result = ArchiveSegment.scan(segment, null, (offset, payload) -> writer.add(payload));
+            if (result.isSealed() && result.isIntact()) {
+                writer.finish();
+            }
+        }
+        if (!result.isSealed() || !result.isIntact()) {
+            Files.deleteIfExists(temporary.toPath());
+            return null;
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Maps a cold segment and reads its block index.
+     *
+     * @return Segment or null if the file isn't a valid cold segment
+     */
+    public static ColdSegment open(File file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 8 + FOOTER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            return null;
+        }
+        int footer = data.limit() - FOOTER_SIZE;
+        long indexOffset = data.getLong(footer);
+        int blocks = data.getInt(footer + 8);
+        int count = data.getInt(footer + 12);
+        if (blocks < 0 || indexOffset < 8 || indexOffset + (long) blocks * ENTRY_SIZE != footer) {
+            return null;
+        }
+        ByteBuffer index = data.duplicate();
+        index.position((int) indexOffset).limit(footer);
+        CRC32 checksum = new CRC32();
+        checksum.update(index);
+        if ((int) checksum.getValue() != data.getInt(footer + 16)) {
+            return null;
+        }
+        int[] offsets = new int[blocks];
+        int[] compressedSizes = new int[blocks];
+        int[] uncompressedSizes = new int[blocks];
+        int[] firstRecords = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int entry = (int) indexOffset + i * ENTRY_SIZE;
+            offsets[i] = (int) data.getLong(entry);
+            compressedSizes[i] = data.getInt(entry + 8);
+            uncompressedSizes[i] = data.getInt(entry + 12);
+            firstRecords[i] = data.getInt(entry + 16);
+        }
+        return new ColdSegment(data, offsets, compressedSizes, uncompressedSizes, firstRecords, count);
+    }
+
+    @Override
+    public byte[] read(int record) throws IOException {
+        int blockIndex = Arrays.binarySearch(firstRecords, record);
+        if (blockIndex < 0) {
+            blockIndex = -blockIndex - 2;
+        }
+        Block block = getBlock(blockIndex);
+        int local = record - firstRecords[blockIndex];
+        int offset = block.offsets[local];
+        int length = ByteBuffer.wrap(block.data, offset, 4).getInt();
+        return Arrays.copyOfRange(block.data, offset + 4, offset + 4 + length);
+    }
+
+    @Override
+    public long getTimestamp(int record) throws IOException {
+        return ByteBuffer.wrap(read(record)).getLong(ArchiveRecord.TIMESTAMP_OFFSET);
+    }
+
+    private Block getBlock(int index) throws IOException {
+        int slot = index % CACHE_SLOTS;
+        Block block = cache.get(slot);
+        if (block != null && block.index == index) {
+            return block;
+        }
+        block = inflate(index);
+        cache.set(slot, block);
+        return block;
+    }
+
+    private Block inflate(int index) throws IOException {
+        byte[] compressed = new byte[compressedSizes[index]];
+        ByteBuffer view = data.duplicate();
+        view.position(offsets[index]);
+        view.get(compressed);
+        byte[] raw = new byte[uncompressedSizes[index]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, raw.length - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != raw.length) {
+                throw new IOException("Truncated block " + index);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + index, e);
+        } finally {
+            inflater.end();
+        }
+        int records = (index + 1 < firstRecords.length ? firstRecords[index + 1] : count) - firstRecords[index];
+        int[] recordOffsets = new int[records];
+        ByteBuffer buffer = ByteBuffer.wrap(raw);
+        int position = 0;
+        for (int i = 0; i < records; i++) {
+            recordOffsets[i] = position;
+            position += 4 + buffer.getInt(position);
+        }
+        return new Block(index, raw, recordOffsets);
+    }
+
+    private static class Block {
+
+        private final int index;
+        private final byte[] data;
+        private final int[] offsets;
+
+        private Block(int index, byte[] data, int[] offsets) {
+            this.index = index;
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+    }
+
+    /**
+     * Fills blocks with records and writes them out compressed.
+     */
+    private static class BlockWriter implements AutoCloseable {
+
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final byte[] buffer = new byte[8192];
+        private final List<int[]> entries = new ArrayList<>();
+        private long position;
+        private int records = 0;
+        private int blockStart = 0;
+
+        private BlockWriter(File file) throws IOException {
+            this.file = new FileOutputStream(file);
+            this.out = new DataOutputStream(new BufferedOutputStream(this.file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = 8;
+        }
+
+        private void add(byte[] payload) throws IOException {
+            blockOut.writeInt(payload.length);
+            blockOut.write(payload);
+            records++;
+            if (block.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.size() == 0) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                int written = deflater.deflate(buffer);
+                out.write(buffer, 0, written);
+                compressed += written;
+            }
+            entries.add(new int[] { (int) position, compressed, block.size(), blockStart });
+            position += compressed;
+            blockStart = records;
+            block.reset();
+        }
+
+        private void finish() throws IOException {
+            flushBlock();
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * ENTRY_SIZE);
+            for (int[] entry : entries) {
+                index.putLong(entry[0]).putInt(entry[1]).putInt(entry[2]).putInt(entry[3]);
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(index.array());
+            out.write(index.array());
+            out.writeLong(position);
+            out.writeInt(entries.size());
+            out.writeInt(records);
+            out.writeInt((int) checksum.getValue());
+            out.flush();
+            // On disk before it gets moved over
+            file.getFD().sync();
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+package io.github.darkkronicle.advancedchat.storage;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.experimental.UtilityClass;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.text.ClickEvent;
+import net.minecraft.text.HoverEvent;
+import net.minecraft.text.LiteralText;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TextColor;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compact binary form of styled text.
+ *
+ * Text is stored as its flattened segments, each a string with the style it's drawn in. Reading it
+ * back is a lot cheaper than parsing JSON, which matters when thousands of messages are loaded at
+ * once. Hover events are rare and complicated, so they're stored as JSON.
+ */
+@Environment(EnvType.CLIENT)
+@UtilityClass
+public class TextCodec {
+
+    private final int BOLD = 1;
+    private final int ITALIC = 1 << 1;
+    private final int UNDERLINED = 1 << 2;
+    private final int STRIKETHROUGH = 1 << 3;
+    private final int OBFUSCATED = 1 << 4;
+    private final int COLOR = 1 << 5;
+    private final int CLICK = 1 << 6;
+    private final int HOVER = 1 << 7;
+    private final int INSERTION = 1 << 8;
+    private final int FONT = 1 << 9;
+
+    public void write(DataOutputStream out, Text text) throws IOException {
+        List<String> strings = new ArrayList<>();
+        List<Style> styles = new ArrayList<>();
+        text.visit((style, string) -> {
+            strings.add(string);
+            styles.add(style);
+            return Optional.empty();
+        }, Style.EMPTY);
+        out.writeInt(strings.size());
+        for (int i = 0; i < strings.size(); i++) {
+            ArchiveRecord.writeString(out, strings.get(i));
+            writeStyle(out, styles.get(i));
+        }
+    }
+
+    public MutableText read(DataInputStream in) throws IOException {
+        int segments = in.readInt();
+        if (segments < 0) {
+            throw new IOException("Negative segment count");
+        }
+        MutableText root = new LiteralText("");
+        for (int i = 0; i < segments; i++) {
+            String string = ArchiveRecord.readString(in);
+            root.append(new LiteralText(string).setStyle(readStyle(in)));
+        }
+        return root;
+    }
+
+    private void writeStyle(DataOutputStream out, Style style) throws IOException {
+        int flags = 0;
+        if (style.isBold()) {
+            flags |= BOLD;
+        }
+        if (style.isItalic()) {
+            flags |= ITALIC;
+        }
+        if (style.isUnderlined()) {
+            flags |= UNDERLINED;
+        }
+        if (style.isStrikethrough()) {
+            flags |= STRIKETHROUGH;
+        }
+        if (style.isObfuscated()) {
+            flags |= OBFUSCATED;
+        }
+        if (style.getColor() != null) {
+            flags |= COLOR;
+        }
+        if (style.getClickEvent() != null) {
+            flags |= CLICK;
+        }
+        if (style.getHoverEvent() != null) {
+            flags |= HOVER;
+        }
+        if (style.getInsertion() != null) {
+            flags |= INSERTION;
+        }
+        if (!Style.DEFAULT_FONT_ID.equals(style.getFont())) {
+            flags |= FONT;
+        }
+        out.writeShort(flags);
+        if (style.getColor() != null) {
+            out.writeInt(style.getColor().getRgb());
+        }
+        if (style.getClickEvent() != null) {
+            ArchiveRecord.writeString(out, style.getClickEvent().getAction().getName());
+            ArchiveRecord.writeString(out, style.getClickEvent().getValue());
+        }
+        if (style.getHoverEvent() != null) {
+            ArchiveRecord.writeString(out, style.getHoverEvent().toJson().toString());
+        }
+        if (style.getInsertion() != null) {
+            ArchiveRecord.writeString(out, style.getInsertion());
+        }
+        if ((flags & FONT) != 0) {
+            ArchiveRecord.writeString(out, style.getFont().toString());
+        }
+    }
+
+    private Style readStyle(DataInputStream in) throws IOException {
+        int flags = in.readUnsignedShort();
+        Style style = Style.EMPTY;
+        if ((flags & BOLD) != 0) {
+            style = style.withBold(true);
+        }
+        if ((flags & ITALIC) != 0) {
+            style = style.withItalic(true);
+        }
+        if ((flags & UNDERLINED) != 0) {
+            style = style.withFormatting(Formatting.UNDERLINE);
+        }
+        if ((flags & STRIKETHROUGH) != 0) {
+            style = style.withFormatting(Formatting.STRIKETHROUGH);
+        }
+        if ((flags & OBFUSCATED) != 0) {
+            style = style.withFormatting(Formatting.OBFUSCATED);
+        }
+        if ((flags & COLOR) != 0) {
+            style = style.withColor(TextColor.fromRgb(in.readInt()));
+        }
+        if ((flags & CLICK) != 0) {
+            ClickEvent.Action action = ClickEvent.Action.byName(ArchiveRecord.readString(in));
+            String value = ArchiveRecord.readString(in);
+            if (action != null) {
+                style = style.withClickEvent(new ClickEvent(action, value));
+            }
+        }
+        if ((flags & HOVER) != 0) {
+            String json = ArchiveRecord.readString(in);
+            try {
+                JsonObject object = new JsonParser().parse(json).getAsJsonObject();
+                style = style.withHoverEvent(HoverEvent.fromJson(object));
+            } catch (RuntimeException e) {
+                // Leave it out rather than losing the message
+            }
+        }
+        if ((flags & INSERTION) != 0) {
+            style = style.withInsertion(ArchiveRecord.readString(in));
+        }
+        if ((flags & FONT) != 0) {
+            Identifier font = Identifier.tryParse(ArchiveRecord.readString(in));
+            if (font != null) {
+                style = style.withFont(font);
+            }
+        }
+        return style;
+    }
+
+}
@@ -51,6 +51,36 @@ public class ColorUtil {
         return color.withAlpha((int) Math.floor((alpha * percent)));
     }
 
+    /**
+     * Gets the alpha channel of a packed ARGB color
+     *
+     * @param color Packed color
+     * @return Alpha from 0 to 255
+     */
+    public int alpha(int color) {
+        return color >>> 24;
+    }
+
+    /**
+     * Replaces the alpha channel of a packed ARGB color. Same as {@link SimpleColor#withAlpha(int)}
+     * but without creating a new object, which matters when it's done every frame.
+     *
+     * @param color Packed color
+     * @param alpha New alpha, clamped to 0-255
+     * @return The packed color with the new alpha
+     */
+    public int withAlpha(int color, int alpha) {
+        alpha = Math.max(0, Math.min(255, alpha));
+        return (color & 0x00FFFFFF) | (alpha << 24);
+    }
+
+    /**
+     * Packed version of {@link #fade(SimpleColor, float)}
+     */
+    public int fade(int color, float percent) {
+        return withAlpha(color, (int) Math.floor(alpha(color) * percent));
+    }
+
     // Standard quick reference colors
     public final SimpleColor WHITE = new SimpleColor(255, 255, 255, 255);
     public final SimpleColor BLACK = new SimpleColor(0, 0, 0, 255);
@@ -74,6 +74,22 @@ public class SearchResult {
         return new SearchResult(input, match, matcher, matches);
     }
 
+    /**
+     * Searches only part of the input. Matches keep their positions in the whole input and anchors match
+     * at the ends of the part.
+     */
+    public static SearchResult searchOf(String input, int start, int end, String match, Filter.FindType type) {
+        Pattern pattern = SearchUtils.compilePattern(match, type);
+        Matcher matcher = pattern.matcher(input);
+        matcher.region(start, end);
+        List<StringMatch> matches = new ArrayList<>();
+        while (matcher.find()) {
+            matches.add(new StringMatch(matcher.group(), matcher.start(), matcher.end()));
+        }
+        matcher.reset();
+        return new SearchResult(input, match, matcher, matches);
+    }
+
     public Matcher getMatcher() {
         return matcher;
     }
@@ -1,20 +1,17 @@
 package io.github.darkkronicle.advancedchat.util;
 
 import io.github.darkkronicle.advancedchat.chat.MessageOwner;
-import io.github.darkkronicle.advancedchat.config.ConfigStorage;
+import io.github.darkkronicle.advancedchat.chat.PlayerListTracker;
 import io.github.darkkronicle.advancedchat.config.Filter;
 import lombok.AllArgsConstructor;
 import lombok.experimental.UtilityClass;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
-import net.minecraft.client.network.PlayerListEntry;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
@@ -72,6 +69,122 @@ public class SearchUtils {
         return null;
     }
 
+    /**
+     * Finds the longest piece of plain text that every match of a regular expression has to contain.
+     * Used to narrow down what a regex has to be run against. This is conservative: only plain
+     * characters and escaped punctuation count, and expressions with alternation, inline flags, counted
+     * repeats, escapes that take arguments (like {@code \x41} or {@code \p{Upper}}), back references or
+     * nested character classes don't return anything.
+     *
+     * @param regex Regular expression
+     * @return Literal text or null if nothing could be found
+     */
+    public String getRequiredLiteral(String regex) {
+        if (regex.contains("|") || regex.contains("(?")) {
+            return null;
+        }
+        String best = null;
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            boolean isLiteral = false;
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(i + 1);
+                if (next == 'Q') {
+                    // Quoted section, everything until \E is literal
+                    int end = regex.indexOf("\\E", i + 2);
+                    String quoted = regex.substring(i + 2, end < 0 ? regex.length() : end);
+                    i = end < 0 ? regex.length() : end + 2;
+                    if (depth == 0 && !isQuantifier(regex, i)) {
+                        current.append(quoted);
+                    } else {
+                        best = longer(best, current);
+                        current.setLength(0);
+                    }
+                    continue;
+                }
+                if ("xupPNck".indexOf(next) >= 0 || Character.isDigit(next)) {
+                    // Takes arguments that could be read as text, or refers to a group
+                    return null;
+                }
+                if (!Character.isLetterOrDigit(next)) {
+                    literal = next;
+                    isLiteral = true;
+                }
+                i += 2;
+            } else if (c == '[') {
+                // Skip over the character class
+                i++;
+                if (i < regex.length() && regex.charAt(i) == '^') {
+                    i++;
+                }
+                if (i < regex.length() && regex.charAt(i) == ']') {
+                    i++;
+                }
+                while (i < regex.length() && regex.charAt(i) != ']') {
+                    char inner = regex.charAt(i);
+                    if (inner == '[') {
+                        // Nested class, union or intersection
+                        return null;
+                    }
+                    if (inner == '\\') {
+                        if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                            return null;
+                        }
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                }
+                i++;
+            } else if (c == '{') {
+                // Counted repeat, the numbers in it aren't text
+                return null;
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (".^$?*+{}".indexOf(c) < 0) {
+                    literal = c;
+                    isLiteral = true;
+                }
+                i++;
+            }
+            if (!isLiteral || depth != 0) {
+                best = longer(best, current);
+                current.setLength(0);
+                continue;
+            }
+            if (i < regex.length() && isQuantifier(regex, i)) {
+                // The character could be missing (?, *, {0}) or repeated (+, {n}), either way the run ends here
+                if (regex.charAt(i) == '+') {
+                    current.append(literal);
+                }
+                best = longer(best, current);
+                current.setLength(0);
+                continue;
+            }
+            current.append(literal);
+        }
+        best = longer(best, current);
+        return best;
+    }
+
+    private boolean isQuantifier(String regex, int index) {
+        return index < regex.length() && "?*+{".indexOf(regex.charAt(index)) >= 0;
+    }
+
+    private String longer(String best, StringBuilder current) {
+        if (current.length() > 0 && (best == null || current.length() > best.length())) {
+            return current.toString();
+        }
+        return best;
+    }
+
     /**
      * Method to find all matches within a string.
      * Is similar to {@link #isMatch(String, String, Filter.FindType)}}. This method just finds every
@@ -134,56 +247,34 @@ public class SearchUtils {
      * @return Owner of the message
      */
     public MessageOwner getAuthor(ClientPlayNetworkHandler networkHandler, String text) {
-        if (networkHandler == null) {
-            return null;
-        }
-        Optional<List<StringMatch>> words = SearchUtils.findMatches(stripColorCodes(text), ConfigStorage.General.MESSAGE_OWNER_REGEX.config.getStringValue(), Filter.FindType.REGEX);
-        if (!words.isPresent()) {
-            return null;
-        }
-        // Start by just checking names and such
-        PlayerListEntry player = null;
-        StringMatch match = null;
-        for (StringMatch m : words.get()) {
-            if (player != null) {
-                break;
-            }
-            for (PlayerListEntry e : networkHandler.getPlayerList()) {
-                // Easy mode
-                if ((e.getDisplayName() != null && m.match.equals(stripColorCodes(e.getDisplayName().getString()))) || m.match.equals(e.getProfile().getName())) {
-                    player = e;
-                    match = m;
-                    break;
-                }
-            }
+        return PlayerListTracker.getInstance().getAuthor(networkHandler, text);
+    }
+
+    /**
+     * Removes every section sign and the character after it, the same as {@code replaceAll("§.", "")}
+     */
+    public String stripColorCodes(String string) {
+        int index = string.indexOf('§');
+        if (index < 0) {
+            return string;
         }
-        // Check for ***everything***
-        HashMap<PlayerListEntry, List<StringMatch>> entryMatches = new HashMap<>();
-        for (PlayerListEntry e : networkHandler.getPlayerList()) {
-            String name = stripColorCodes(e.getDisplayName() == null ? e.getProfile().getName() : e.getDisplayName().getString());
-            Optional<List<StringMatch>> nameWords = SearchUtils.findMatches(name, ConfigStorage.General.MESSAGE_OWNER_REGEX.config.getStringValue(), Filter.FindType.REGEX);
-            if (!nameWords.isPresent()) {
-                continue;
-            }
-            entryMatches.put(e, nameWords.get());
-        }
-        for (StringMatch m : words.get()) {
-            for (Map.Entry<PlayerListEntry, List<StringMatch>> entry : entryMatches.entrySet()) {
-                for (StringMatch nm : entry.getValue()) {
-                    if (nm.match.equals(m.match)) {
-                        if (player != null && match.start <= m.start) {
-                            return new MessageOwner(match.match, player);
-                        }
-                        return new MessageOwner(nm.match, entry.getKey());
-                    }
-                }
+        StringBuilder builder = new StringBuilder(string.length());
+        int start = 0;
+        while (index >= 0) {
+            if (index + 1 < string.length() && !isLineTerminator(string.charAt(index + 1))) {
+                builder.append(string, start, index);
+                start = index + 2;
+                index = string.indexOf('§', start);
+            } else {
+                index = string.indexOf('§', index + 1);
             }
         }
-        return null;
+        builder.append(string, start, string.length());
+        return builder.toString();
     }
 
-    public String stripColorCodes(String string) {
-        return string.replaceAll("§.", "");
+    private boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
     private final TreeMap<Integer, String> map = new TreeMap<>();